@@ -91,27 +91,38 @@ public class AccountChest {
     }
 
     /**
-     * Get account inventory of this account chest, which is based on the container inventory.
+     * Cached values of vault containers.
      *
-     * @return account inventory of this account chest
+     * @return the chest balance cache
      */
-    private AccountInventory accountInventory() {
-        Inventory inventory = inventory();
+    private static ChestBalanceCache chestBalances() {
+        return Gringotts.getInstance().getAccounting().getChestBalances();
+    }
 
-        return inventory != null ? new AccountInventory(inventory) : null;
+    /**
+     * Inventory of this chest, if it is still a valid vault.
+     *
+     * @return inventory of this chest, or null if it is not a valid vault anymore
+     */
+    Inventory validInventory() {
+        if (updateInvalid()) {
+            return null;
+        }
+
+        return inventory();
     }
 
     /**
-     * Test if this chest is valid, and if not, removes it from storage.
+     * Test if this chest is valid, and if not, reports it to the vault sweeper, which removes it from storage.
+     * Does not change the world or storage itself.
      *
-     * @return true if valid, false if not and was removed from storage.
+     * @return true if invalid, false if valid.
      */
     private boolean updateInvalid() {
         if (notValid()) {
             Gringotts.getInstance()
-                    .getLogger()
-                    .info("Destroying orphaned vault: " + this);
-            destroy();
+                    .getVaultSweeper()
+                    .report(this);
 
             return true;
         } else {
@@ -129,12 +140,33 @@ public class AccountChest {
             return 0;
         }
 
-        AccountInventory inv = accountInventory();
-        if (inv == null) {
+        Inventory inventory = inventory();
+
+        if (inventory == null) {
             return 0;
         }
 
-        return inv.balance();
+        return snapshot(inventory);
+    }
+
+    /**
+     * Count the inventory of this chest and remember the value as the last known value of this vault.
+     *
+     * @param inventory inventory of this chest
+     * @return balance of this chest
+     */
+    private long snapshot(Inventory inventory) {
+        long balance = chestBalances().balance(inventory, () -> new AccountInventory(inventory).balance());
+
+        Gringotts.getInstance().getVaultSnapshots().record(
+                sign.getWorld().getName(),
+                sign.getX(),
+                sign.getY(),
+                sign.getZ(),
+                balance
+        );
+
+        return balance;
     }
 
     /**
@@ -150,9 +182,18 @@ public class AccountChest {
             return 0;
         }
 
-        AccountInventory inv = accountInventory();
+        Inventory inventory = inventory();
+
+        if (inventory == null) {
+            return 0;
+        }
+
+        long added = new AccountInventory(inventory).add(value);
 
-        return inv == null ? 0 : inv.add(value);
+        chestBalances().adjust(inventory, added);
+        snapshot(inventory);
+
+        return added;
     }
 
     /**
@@ -168,9 +209,18 @@ public class AccountChest {
             return 0;
         }
 
-        AccountInventory inv = accountInventory();
+        Inventory inventory = inventory();
+
+        if (inventory == null) {
+            return 0;
+        }
+
+        long removed = new AccountInventory(inventory).remove(value);
 
-        return inv == null ? 0 : inv.remove(value);
+        chestBalances().adjust(inventory, -removed);
+        snapshot(inventory);
+
+        return removed;
     }
 
     /**
@@ -195,17 +245,6 @@ public class AccountChest {
                 lines[2].length() == 0 || chest() == null;
     }
 
-    /**
-     * Triggered on destruction of physical chest or sign.
-     */
-    void destroy() {
-        Gringotts.getInstance()
-                .getDao()
-                .deleteAccountChest(this);
-
-        sign.getBlock().breakNaturally();
-    }
-
     /**
      * To string string.
      *
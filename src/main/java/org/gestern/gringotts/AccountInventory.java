@@ -1,5 +1,6 @@
 package org.gestern.gringotts;
 
+import org.bukkit.Material;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.gestern.gringotts.currency.Denomination;
@@ -24,6 +25,8 @@ public class AccountInventory {
 
     /**
      * Current balance of this inventory in cents (or rather atomic currency units).
+     * Only storage slots are counted, since only those are used to add and remove currency. Armor and off hand slots
+     * of players are not.
      *
      * @return current balance of this inventory in cents
      */
@@ -31,7 +34,7 @@ public class AccountInventory {
         GringottsCurrency cur = CONF.getCurrency();
         long count = 0;
 
-        for (ItemStack stack : inventory) {
+        for (ItemStack stack : inventory.getStorageContents()) {
             count += cur.getValue(stack);
         }
 
@@ -47,40 +50,54 @@ public class AccountInventory {
      * @return amount actually added
      */
     public long add(long value) {
-        long remaining = value;
+        List<Denomination> denominations = CONF.getCurrency().getDenominations();
+        long[] values = new long[denominations.size()];
+        int[] maxStackSizes = new int[denominations.size()];
 
-        // try denominations from largest to smallest
-        for (Denomination denomination : CONF.getCurrency().getDenominations()) {
-            if (denomination.getValue() <= remaining) {
-                ItemStack stack = new ItemStack(denomination.getKey().type);
-                int stackSize = stack.getMaxStackSize();
-                long denItemCount = denomination.getValue() > 0 ? remaining / denomination.getValue() : 0;
-
-                // add stacks in this denomination until stuff is returned
-                while (denItemCount > 0) {
-                    int remainderStackSize = denItemCount > stackSize ? stackSize : (int) denItemCount;
-                    stack.setAmount(remainderStackSize);
-
-                    int returned = 0;
-                    for (ItemStack leftover : inventory.addItem(stack).values()) {
-                        returned += leftover.getAmount();
-                    }
-
-                    // reduce remaining amount by whatever was deposited
-                    long added = (long) remainderStackSize - returned;
-
-                    denItemCount -= added;
-                    remaining -= added * denomination.getValue();
-
-                    // no more space for this denomination
-                    if (returned > 0) {
-                        break;
-                    }
-                }
+        for (int d = 0; d < values.length; d++) {
+            values[d] = denominations.get(d).getValue();
+            maxStackSizes[d] = denominations.get(d).getKey().type.getMaxStackSize();
+        }
+
+        ItemStack[] contents = inventory.getStorageContents();
+        int[] kinds = new int[contents.length];
+        int[] amounts = new int[contents.length];
+
+        for (int slot = 0; slot < contents.length; slot++) {
+            ItemStack stack = contents[slot];
+
+            if (stack == null || stack.getType() == Material.AIR) {
+                kinds[slot] = InventoryFillEngine.EMPTY;
+                continue;
             }
+
+            Denomination denomination = CONF.getCurrency().getDenomination(stack);
+
+            kinds[slot] = denomination != null ? denominations.indexOf(denomination) : InventoryFillEngine.OTHER;
+            amounts[slot] = stack.getAmount();
         }
 
-        return value - remaining;
+        InventoryFillEngine engine = new InventoryFillEngine(kinds, amounts, inventory.getMaxStackSize());
+        long added = engine.fill(value, values, maxStackSizes);
+
+        if (added == 0) {
+            return 0;
+        }
+
+        for (int slot = 0; slot < contents.length; slot++) {
+            if (engine.changed(slot)) {
+                ItemStack stack = kinds[slot] == InventoryFillEngine.EMPTY
+                        ? new ItemStack(denominations.get(engine.kind(slot)).getKey().type)
+                        : contents[slot].clone();
+
+                stack.setAmount(engine.amount(slot));
+                contents[slot] = stack;
+            }
+        }
+
+        inventory.setStorageContents(contents);
+
+        return added;
     }
 
     /**
@@ -1,9 +1,18 @@
 package org.gestern.gringotts;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.bukkit.World;
 import org.gestern.gringotts.accountholder.AccountHolder;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.gestern.gringotts.Configuration.CONF;
 import static org.gestern.gringotts.Gringotts.getInstance;
 
 /**
@@ -12,21 +21,199 @@ import static org.gestern.gringotts.Gringotts.getInstance;
  * @author jast
  */
 public class Accounting {
+    /**
+     * Horizontal distance between the signs of two vaults that may have connected chests:
+     * each sign is at most one block from its chest, and a double chest adds one more block.
+     */
+    private static final int CONNECTED_CHEST_RADIUS = 3;
+
+    /**
+     * Recently used accounts, keyed by account type and id.
+     */
+    private final Cache<String, GringottsAccount> accounts = CacheBuilder.newBuilder()
+            .maximumSize(CONF.accountCacheSize)
+            .build();
+
+    /**
+     * Keys of accounts known to be in storage.
+     */
+    private final Set<String> storedAccounts = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Resolved chests of accounts, keyed by account type and id.
+     */
+    private final Map<String, List<AccountChest>> chestCache = new ConcurrentHashMap<>();
+
+    /**
+     * Counts invalidations of the chest cache, so that chests loaded while an invalidation happened are not kept.
+     */
+    private final AtomicLong chestGeneration = new AtomicLong();
+
+    /**
+     * Values held by vault containers.
+     */
+    private final ChestBalanceCache chestBalances = new ChestBalanceCache();
+
+    /**
+     * Transfers between accounts.
+     */
+    private final TransferEngine transfers = new TransferEngine();
+
+    /**
+     * Accounts ranked by balance.
+     */
+    private final BalanceLeaderboard leaderboard = new BalanceLeaderboard();
+
+    private static String accountKey(AccountHolder owner) {
+        return owner.getType() + ":" + owner.getId();
+    }
+
     /**
      * Get the account associated with an account holder.
      * If it was not yet stored in the data storage, it will be persisted.
+     * Storage is only checked the first time an account is requested.
      *
      * @param owner account holder
      * @return account associated with an account holder
      */
     public GringottsAccount getAccount(AccountHolder owner) {
-        GringottsAccount account = new GringottsAccount(owner);
+        String key = accountKey(owner);
+        GringottsAccount account = accounts.getIfPresent(key);
+
+        if (account != null) {
+            return account;
+        }
+
+        account = new GringottsAccount(owner);
 
-        getInstance().getDao().storeAccount(account);
+        if (!storedAccounts.contains(key)) {
+            getInstance().getDao().storeAccount(account);
+            storedAccounts.add(key);
+
+            // storing may have renamed a legacy account to this one, along with its chests
+            invalidateChests(owner);
+        }
+
+        accounts.put(key, account);
 
         return account;
     }
 
+    /**
+     * Drop the remembered account instance of an account holder, for example when a player goes offline.
+     * The account is still known to exist in storage.
+     *
+     * @param owner account holder
+     */
+    public void evictAccount(AccountHolder owner) {
+        accounts.invalidate(accountKey(owner));
+    }
+
+    /**
+     * Forget everything known about the account of an account holder, after it was deleted from storage.
+     *
+     * @param owner account holder
+     */
+    public void forgetAccount(AccountHolder owner) {
+        String key = accountKey(owner);
+
+        accounts.invalidate(key);
+        storedAccounts.remove(key);
+        invalidateChests(owner);
+        leaderboard.remove(owner);
+    }
+
+    /**
+     * Get all chests belonging to the given account.
+     * Chests are loaded from storage once and remembered until the cache for the account is invalidated.
+     *
+     * @param account account to get chests for
+     * @return chests of the account
+     */
+    public List<AccountChest> getChests(GringottsAccount account) {
+        String key = accountKey(account.owner);
+        List<AccountChest> chests = chestCache.get(key);
+
+        if (chests != null) {
+            return chests;
+        }
+
+        // storage and world access stay outside the map, loading the same account twice is harmless
+        long generation = chestGeneration.get();
+
+        chests = Collections.unmodifiableList(getInstance().getDao().retrieveChests(account));
+
+        List<AccountChest> cached = chestCache.putIfAbsent(key, chests);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        // an invalidation may have run while loading, then the loaded chests must not stay
+        if (chestGeneration.get() != generation) {
+            chestCache.remove(key, chests);
+        }
+
+        return chests;
+    }
+
+    /**
+     * Forget the cached chests of an account holder, so they are loaded from storage again on next use.
+     *
+     * @param owner account holder whose chests changed
+     */
+    public void invalidateChests(AccountHolder owner) {
+        chestGeneration.incrementAndGet();
+        chestCache.remove(accountKey(owner));
+    }
+
+    /**
+     * Forget the cached chests of every account having a chest in the given world.
+     *
+     * @param world world whose chests are no longer valid
+     */
+    public void invalidateChests(World world) {
+        chestGeneration.incrementAndGet();
+        chestCache.values().removeIf(chests -> chests.stream()
+                .anyMatch(chest -> world.equals(chest.sign.getWorld())));
+    }
+
+    /**
+     * Forget the cached chests of all accounts, for example when a world was loaded and chests in it can now be
+     * resolved.
+     */
+    public void invalidateChests() {
+        chestGeneration.incrementAndGet();
+        chestCache.clear();
+    }
+
+    /**
+     * Moves money between accounts.
+     *
+     * @return the transfer engine
+     */
+    public TransferEngine getTransfers() {
+        return transfers;
+    }
+
+    /**
+     * Accounts ranked by balance.
+     *
+     * @return the balance leaderboard
+     */
+    public BalanceLeaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Values held by vault containers, shared by all accounts.
+     *
+     * @return the chest balance cache
+     */
+    public ChestBalanceCache getChestBalances() {
+        return chestBalances;
+    }
+
     /**
      * Determine if a given AccountChest would be connected to an AccountChest already in storage.
      * Alas! need to call this every time we try to add an account chest, since chests can be added
@@ -55,13 +242,18 @@ public class Accounting {
      * @throws GringottsStorageException when saving of account chest failed
      */
     public boolean addChest(AccountChest chest) {
-        // TODO refactor to do a more intelligent/quick query
-        List<AccountChest> allChests = getInstance().getDao().retrieveChests();
+        // only vaults close to the new one can be connected to it
+        List<AccountChest> allChests = getInstance().getDao().retrieveChestsNear(
+                chest.sign.getLocation(),
+                CONNECTED_CHEST_RADIUS
+        );
 
         // if there is an invalid stored chest on location of new chest, remove it from storage.
         if (allChests.contains(chest)) {
             getInstance().getLogger().info("removing orphaned vault: " + chest);
             getInstance().getDao().deleteAccountChest(chest);
+            getChestBalances().invalidateNear(chest.sign.getLocation());
+            invalidateChests(chest.account.owner);
             allChests.remove(chest);
         }
 
@@ -73,6 +265,11 @@ public class Accounting {
             throw new GringottsStorageException("Could not save account chest: " + chest);
         }
 
+        invalidateChests(chest.account.owner);
+
+        // the container may have been used as something else before
+        chestBalances.invalidateNear(chest.sign.getLocation());
+
         return true;
     }
 
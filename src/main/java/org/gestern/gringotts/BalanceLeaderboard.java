@@ -0,0 +1,192 @@
+package org.gestern.gringotts;
+
+import org.gestern.gringotts.accountholder.AccountHolder;
+import org.gestern.gringotts.data.AccountIds;
+import org.gestern.gringotts.data.DAO;
+import org.gestern.gringotts.event.VaultCreationEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Ranks accounts by balance, for leaderboards.
+ * <p>
+ * The ranking is kept up to date as balances change instead of being computed on request: every change of virtual
+ * cents, and every time the vaults of an account are counted or changed, updates the entry of that account. Changes
+ * made by Gringotts itself are applied as deltas to the last known value of the vaults. The balance of an entry is
+ * its virtual cents plus the last known value of its vaults, so accounts whose vaults were not counted since startup
+ * are ranked by virtual cents only. Reading a page of the ranking only visits the entries
+ * up to that page, however many accounts there are.
+ */
+public class BalanceLeaderboard {
+
+    private static final Comparator<Entry> RANKING = Comparator
+            .comparingLong(Entry::getBalance).reversed()
+            .thenComparing(entry -> entry.type)
+            .thenComparing(entry -> entry.id);
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(RANKING);
+
+    private static String key(String type, String id) {
+        return AccountIds.key(type, id);
+    }
+
+    /**
+     * Fill the ranking with the virtual cents of all stored accounts. Accounts updated in the meantime keep their
+     * newer values. May be called from any thread.
+     *
+     * @param dao storage to read virtual cents from
+     */
+    public void load(DAO dao) {
+        for (VaultCreationEvent.Type type : VaultCreationEvent.Type.values()) {
+            Map<String, Long> cents = dao.retrieveCents(type.getId());
+
+            synchronized (this) {
+                for (Map.Entry<String, Long> account : cents.entrySet()) {
+                    if (!entries.containsKey(key(type.getId(), account.getKey()))) {
+                        put(new Entry(type.getId(), account.getKey(), account.getValue(), 0, false));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the virtual cents of an account.
+     *
+     * @param owner owner of the account
+     * @param cents virtual cents now stored for the account
+     */
+    public synchronized void updateVirtual(AccountHolder owner, long cents) {
+        Entry entry = entries.get(key(owner.getType(), owner.getId()));
+
+        if (entry != null) {
+            put(new Entry(entry.type, entry.id, cents, entry.vault, entry.vaultCounted));
+        } else {
+            put(new Entry(owner.getType(), owner.getId(), cents, 0, false));
+        }
+    }
+
+    /**
+     * Update the value of the vaults of an account.
+     *
+     * @param owner owner of the account
+     * @param cents value of the vaults in cents
+     */
+    public synchronized void updateVault(AccountHolder owner, long cents) {
+        Entry entry = entries.get(key(owner.getType(), owner.getId()));
+        long virtual = entry != null ? entry.virtual : 0;
+
+        put(new Entry(owner.getType(), owner.getId(), virtual, cents, true));
+    }
+
+    /**
+     * Change the value of the vaults of an account by the value Gringotts put into them or took out of them.
+     *
+     * @param owner owner of the account
+     * @param delta change of the value of the vaults in cents
+     * @return false if the value of the vaults is not known, so it needs to be counted instead
+     */
+    public synchronized boolean adjustVault(AccountHolder owner, long delta) {
+        Entry entry = entries.get(key(owner.getType(), owner.getId()));
+
+        if (entry == null || !entry.vaultCounted) {
+            return false;
+        }
+
+        if (delta != 0) {
+            put(new Entry(entry.type, entry.id, entry.virtual, entry.vault + delta, true));
+        }
+
+        return true;
+    }
+
+    /**
+     * Remove an account from the ranking, after it was deleted.
+     *
+     * @param owner owner of the account
+     */
+    public synchronized void remove(AccountHolder owner) {
+        Entry entry = entries.remove(key(owner.getType(), owner.getId()));
+
+        if (entry != null) {
+            ranking.remove(entry);
+        }
+    }
+
+    private void put(Entry entry) {
+        Entry previous = entries.put(key(entry.type, entry.id), entry);
+
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+
+        ranking.add(entry);
+    }
+
+    /**
+     * Accounts with the highest balances.
+     *
+     * @param offset number of top accounts to skip
+     * @param limit  maximum number of accounts to return
+     * @return accounts in descending order of balance
+     */
+    public synchronized List<Entry> top(int offset, int limit) {
+        List<Entry> top = new ArrayList<>(Math.max(0, Math.min(limit, ranking.size() - offset)));
+        Iterator<Entry> ranked = ranking.iterator();
+
+        for (int skipped = 0; skipped < offset && ranked.hasNext(); skipped++) {
+            ranked.next();
+        }
+
+        while (top.size() < limit && ranked.hasNext()) {
+            top.add(ranked.next());
+        }
+
+        return top;
+    }
+
+    /**
+     * Number of ranked accounts.
+     *
+     * @return number of ranked accounts
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Ranked balance of an account.
+     */
+    public static final class Entry {
+        public final String type;
+        public final String id;
+        private final long virtual;
+        private final long vault;
+        private final boolean vaultCounted;
+
+        private Entry(String type, String id, long virtual, long vault, boolean vaultCounted) {
+            this.type = type;
+            this.id = id;
+            this.virtual = virtual;
+            this.vault = vault;
+            this.vaultCounted = vaultCounted;
+        }
+
+        /**
+         * Balance the account is ranked by: virtual cents plus the last known value of its vaults.
+         *
+         * @return balance in cents
+         */
+        public long getBalance() {
+            return virtual + vault;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package org.gestern.gringotts;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.inventory.Inventory;
+import org.gestern.gringotts.data.ChestIndex;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the currency value held by vault containers, keyed by the location of their inventory.
+ * <p>
+ * A value stays valid until the container is changed by something other than Gringotts, which is signalled by
+ * inventory and block events. Most of these events fire before the change is applied, so the value is forgotten both
+ * right away and again on the next tick, when the change is done. Changes made by Gringotts itself update the
+ * remembered value in place. Values are also forgotten when their chunk unloads or their vault is removed. Only
+ * container inventories are cached: player inventories and ender chests change too often without events to be worth
+ * it.
+ */
+public class ChestBalanceCache {
+
+    /**
+     * Horizontal distance from a changed block within which cached containers are forgotten.
+     * Covers both halves of a double chest, whose inventory location is between its two blocks.
+     */
+    private static final double NEAR_DISTANCE = 2;
+
+    private final Map<Location, Long> balances = new ConcurrentHashMap<>();
+
+    /**
+     * Locations of the remembered values by world name and chunk, so that block changes only look at nearby ones.
+     */
+    private final Map<String, Map<Long, Set<Location>>> chunks = new ConcurrentHashMap<>();
+
+    /**
+     * Inventory locations and block locations to forget again on the next tick.
+     */
+    private final Set<Location> pendingInventories = ConcurrentHashMap.newKeySet();
+    private final Set<Location> pendingBlocks = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /**
+     * Location identifying a cacheable inventory.
+     *
+     * @param inventory inventory of a container
+     * @return location of the inventory, or null if it should not be cached
+     */
+    private static Location key(Inventory inventory) {
+        switch (inventory.getType()) {
+            case CHEST:
+            case DISPENSER:
+            case FURNACE:
+            case HOPPER:
+            case DROPPER:
+            case BARREL:
+                return inventory.getLocation();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Get the value held by an inventory, calculating it if it is not known yet.
+     *
+     * @param inventory inventory of a vault container
+     * @param calculate calculates the value from the inventory contents
+     * @return value of the inventory in cents
+     */
+    public long balance(Inventory inventory, LongSupplier calculate) {
+        Location key = key(inventory);
+
+        if (key == null) {
+            return calculate.getAsLong();
+        }
+
+        Long balance = balances.get(key);
+
+        if (balance == null) {
+            balance = calculate.getAsLong();
+
+            if (balances.put(key, balance) == null) {
+                chunk(key, true).add(key);
+            }
+        }
+
+        return balance;
+    }
+
+    /**
+     * Change the remembered value of an inventory after Gringotts put items into it or took items out of it.
+     * Nothing is done if the value is not known.
+     *
+     * @param inventory inventory that was changed
+     * @param delta     change of its value in cents
+     */
+    public void adjust(Inventory inventory, long delta) {
+        if (delta == 0) {
+            return;
+        }
+
+        Location key = key(inventory);
+
+        if (key != null) {
+            balances.computeIfPresent(key, (k, balance) -> balance + delta);
+        }
+    }
+
+    /**
+     * Forget the value of an inventory.
+     *
+     * @param inventory inventory that was changed
+     */
+    public void invalidate(Inventory inventory) {
+        Location key = key(inventory);
+
+        if (key != null) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Forget the value of every container at or next to a block.
+     *
+     * @param location location of a changed block
+     */
+    public void invalidateNear(Location location) {
+        if (balances.isEmpty() || location.getWorld() == null) {
+            return;
+        }
+
+        Map<Long, Set<Location>> worldChunks = chunks.get(location.getWorld().getName());
+
+        if (worldChunks == null) {
+            return;
+        }
+
+        int x = location.getBlockX();
+        int z = location.getBlockZ();
+        int radius = (int) Math.ceil(NEAR_DISTANCE);
+
+        for (int cx = (x - radius) >> 4; cx <= (x + radius) >> 4; cx++) {
+            for (int cz = (z - radius) >> 4; cz <= (z + radius) >> 4; cz++) {
+                Set<Location> chunk = worldChunks.get(ChestIndex.chunkKey(cx << 4, cz << 4));
+
+                if (chunk == null) {
+                    continue;
+                }
+
+                for (Location key : chunk) {
+                    if (Math.abs(key.getBlockY() - location.getBlockY()) <= 1
+                            && Math.abs(key.getX() - location.getX()) <= NEAR_DISTANCE
+                            && Math.abs(key.getZ() - location.getZ()) <= NEAR_DISTANCE) {
+                        remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget the value of an inventory that is about to be changed, now and again once the change is applied on the
+     * next tick, so a value counted in between is not kept.
+     *
+     * @param inventory inventory that is changed by the current event
+     */
+    public void invalidateBeforeChange(Inventory inventory) {
+        Location key = key(inventory);
+
+        if (key != null) {
+            remove(key);
+            pendingInventories.add(key);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Forget the value of every container at or next to a block that is about to be changed, now and again once the
+     * change is applied on the next tick.
+     *
+     * @param location location of a block changed by the current event
+     */
+    public void invalidateNearBeforeChange(Location location) {
+        invalidateNear(location);
+        pendingBlocks.add(location);
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTask(Gringotts.getInstance(), this::flush);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+
+        for (Iterator<Location> pending = pendingInventories.iterator(); pending.hasNext(); ) {
+            remove(pending.next());
+            pending.remove();
+        }
+
+        for (Iterator<Location> pending = pendingBlocks.iterator(); pending.hasNext(); ) {
+            invalidateNear(pending.next());
+            pending.remove();
+        }
+    }
+
+    /**
+     * Forget the values of all containers in a chunk, which is unloaded.
+     *
+     * @param chunk chunk that is unloaded
+     */
+    public void invalidate(Chunk chunk) {
+        Map<Long, Set<Location>> worldChunks = chunks.get(chunk.getWorld().getName());
+
+        if (worldChunks == null) {
+            return;
+        }
+
+        Set<Location> keys = worldChunks.remove(ChestIndex.chunkKey(chunk.getX() << 4, chunk.getZ() << 4));
+
+        if (keys != null) {
+            balances.keySet().removeAll(keys);
+        }
+    }
+
+    /**
+     * Forget the values of all containers in a world.
+     *
+     * @param world world that is no longer loaded
+     */
+    public void invalidate(World world) {
+        chunks.remove(world.getName());
+        balances.keySet().removeIf(key -> world.equals(key.getWorld()));
+    }
+
+    private void remove(Location key) {
+        balances.remove(key);
+
+        Set<Location> chunk = chunk(key, false);
+
+        if (chunk != null) {
+            chunk.remove(key);
+        }
+    }
+
+    /**
+     * Locations of remembered values in the chunk of a location.
+     *
+     * @param key    location of a remembered value
+     * @param create whether to create the set if there is none yet
+     * @return the locations, or null if there are none and create is false
+     */
+    private Set<Location> chunk(Location key, boolean create) {
+        String world = key.getWorld().getName();
+        long chunkKey = ChestIndex.chunkKey(key.getBlockX(), key.getBlockZ());
+
+        if (!create) {
+            Map<Long, Set<Location>> worldChunks = chunks.get(world);
+
+            return worldChunks != null ? worldChunks.get(chunkKey) : null;
+        }
+
+        return chunks.computeIfAbsent(world, w -> new ConcurrentHashMap<>())
+                .computeIfAbsent(chunkKey, k -> ConcurrentHashMap.newKeySet());
+    }
+}
@@ -75,6 +75,54 @@ public enum Configuration {
      * Balance command shows inventory balance.
      */
     public boolean balanceShowInventory = true;
+    /**
+     * Database access implementation: "ebean" or "jdbc".
+     */
+    public String databaseBackend = "ebean";
+    /**
+     * Number of connections kept open by the jdbc database backend.
+     */
+    public int databasePoolSize = 4;
+    /**
+     * Keep virtual balances in memory and write them to the database in the background.
+     */
+    public boolean ledgerEnabled = true;
+    /**
+     * Ticks between background writes of changed virtual balances to the database.
+     */
+    public long ledgerFlushInterval = 100;
+    /**
+     * Record all transactions in an append-only journal.
+     */
+    public boolean journalEnabled = true;
+    /**
+     * Kilobytes after which a journal segment is closed.
+     */
+    public long journalSegmentSize = 4096;
+    /**
+     * Closed journal segments to keep before they are folded into the snapshot.
+     */
+    public int journalMaxSegments = 16;
+    /**
+     * Milliseconds per tick to spend on account work queued for the main thread.
+     */
+    public long mainThreadBudget = 5;
+    /**
+     * Maximum number of account instances to keep in memory.
+     */
+    public long accountCacheSize = 1000;
+    /**
+     * Milliseconds per tick to spend on checking vaults for orphans.
+     */
+    public long vaultSweepBudget = 1;
+    /**
+     * Ticks between background checks of all vaults for orphans.
+     */
+    public long vaultSweepInterval = 6000;
+    /**
+     * Count vaults in unloaded chunks from their last snapshot when reading balances, instead of loading the chunk.
+     */
+    public boolean vaultSnapshots = false;
     /**
      * Currency configuration.
      */
@@ -171,6 +219,20 @@ public enum Configuration {
         CONF.language = savedConfig.getString("language", "custom");
 
         CONF.vaultPattern = savedConfig.getString("vault_pattern", "[^\\[]*\\[(\\w*) ?vault\\]");
+
+        CONF.databaseBackend = savedConfig.getString("database.backend", "ebean");
+        CONF.databasePoolSize = savedConfig.getInt("database.pool-size", 4);
+        CONF.ledgerEnabled = savedConfig.getBoolean("database.ledger.enabled", true);
+        CONF.ledgerFlushInterval = savedConfig.getLong("database.ledger.flush-interval", 100);
+        CONF.journalEnabled = savedConfig.getBoolean("database.journal.enabled", true);
+        CONF.journalSegmentSize = savedConfig.getLong("database.journal.segment-size", 4096);
+        CONF.journalMaxSegments = savedConfig.getInt("database.journal.max-segments", 16);
+
+        CONF.mainThreadBudget = savedConfig.getLong("performance.main-thread-budget", 5);
+        CONF.accountCacheSize = savedConfig.getLong("performance.account-cache-size", 1000);
+        CONF.vaultSweepBudget = savedConfig.getLong("performance.vault-sweep-budget", 1);
+        CONF.vaultSweepInterval = savedConfig.getLong("performance.vault-sweep-interval", 6000);
+        CONF.vaultSnapshots = savedConfig.getBoolean("performance.vault-snapshots", false);
     }
 
     /**
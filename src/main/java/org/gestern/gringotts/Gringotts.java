@@ -31,6 +31,7 @@ import org.gestern.gringotts.api.dependency.DependencyProvider;
 import org.gestern.gringotts.api.impl.GringottsEco;
 import org.gestern.gringotts.api.impl.ReserveConnector;
 import org.gestern.gringotts.api.impl.VaultConnector;
+import org.gestern.gringotts.commands.BaltopExecutor;
 import org.gestern.gringotts.commands.GringottsExecutor;
 import org.gestern.gringotts.commands.MoneyAdminExecutor;
 import org.gestern.gringotts.commands.MoneyExecutor;
@@ -38,13 +39,18 @@ import org.gestern.gringotts.currency.Denomination;
 import org.gestern.gringotts.data.DAO;
 import org.gestern.gringotts.data.DerbyDAO;
 import org.gestern.gringotts.data.EBeanDAO;
+import org.gestern.gringotts.data.JdbcDAO;
+import org.gestern.gringotts.data.LedgerDAO;
 import org.gestern.gringotts.data.Migration;
+import org.gestern.gringotts.data.TransactionJournal;
+import org.gestern.gringotts.data.VaultSnapshots;
 import org.gestern.gringotts.dependency.DependencyProviderImpl;
 import org.gestern.gringotts.dependency.GenericDependency;
 import org.gestern.gringotts.dependency.towny.TownyDependency;
 import org.gestern.gringotts.event.AccountListener;
 import org.gestern.gringotts.event.PlayerVaultListener;
 import org.gestern.gringotts.event.VaultCreator;
+import org.gestern.gringotts.event.VaultInventoryListener;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
@@ -70,7 +76,11 @@ public class Gringotts extends JavaPlugin {
     private final DependencyProvider dependencies = new DependencyProviderImpl(this);
     private final EbeanServer ebean;
     private Accounting accounting;
+    private MainThreadDispatcher dispatcher;
+    private VaultSweeper vaultSweeper;
     private DAO dao;
+    private TransactionJournal journal;
+    private VaultSnapshots vaultSnapshots;
     private Eco eco;
 
     /**
@@ -120,16 +130,32 @@ public class Gringotts extends JavaPlugin {
         instance = this;
 
         try {
-            // just call DAO once to ensure it's loaded before startup is complete
-            dao = getDAO();
-
             // load and init configuration
             saveDefaultConfig(); // saves default configuration if no config.yml exists yet
             reloadConfig();
 
+            // just call DAO once to ensure it's loaded before startup is complete
+            dao = getDAO();
+
+            if (CONF.journalEnabled) {
+                journal = new TransactionJournal(
+                        new File(getDataFolder(), "journal"),
+                        CONF.journalSegmentSize * 1024,
+                        CONF.journalMaxSegments
+                );
+            }
+
+            vaultSnapshots = new VaultSnapshots(this, getDataFolder(), dao);
+
+            accountHolderFactory.getPlayerNames().addAll(Bukkit.getOfflinePlayers());
+
+            dispatcher = new MainThreadDispatcher(this, CONF.mainThreadBudget);
+            vaultSweeper = new VaultSweeper(this, CONF.vaultSweepBudget, CONF.vaultSweepInterval);
             accounting = new Accounting();
             eco = new GringottsEco();
 
+            Bukkit.getScheduler().runTaskAsynchronously(this, () -> accounting.getLeaderboard().load(dao));
+
             if (!(this.dependencies.hasDependency("vault") ||
                     this.dependencies.hasDependency("reserve"))) {
                 Bukkit.getPluginManager().disablePlugin(this);
@@ -272,6 +298,23 @@ public class Gringotts extends JavaPlugin {
     public void onDisable() {
         this.dependencies.onDisable();
 
+        // finish account work still waiting for the main thread
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+
+        if (vaultSweeper != null) {
+            vaultSweeper.shutdown();
+        }
+
+        if (journal != null) {
+            journal.shutdown();
+        }
+
+        if (vaultSnapshots != null) {
+            vaultSnapshots.shutdown();
+        }
+
         // shut down db connection
         try {
             if (dao != null) {
@@ -328,6 +371,7 @@ public class Gringotts extends JavaPlugin {
     private void registerCommands() {
         registerCommand(new String[]{"balance", "money"}, new MoneyExecutor());
         registerCommand("moneyadmin", new MoneyAdminExecutor());
+        registerCommand("baltop", new BaltopExecutor());
         registerCommand("gringotts", new GringottsExecutor(this));
     }
 
@@ -368,6 +412,7 @@ public class Gringotts extends JavaPlugin {
         manager.registerEvents(new AccountListener(), this);
         manager.registerEvents(new PlayerVaultListener(), this);
         manager.registerEvents(new VaultCreator(), this);
+        manager.registerEvents(new VaultInventoryListener(), this);
 
         // listeners for other account types are loaded with dependencies
     }
@@ -455,7 +500,25 @@ public class Gringotts extends JavaPlugin {
             migration.doUUIDMigration();
         }
 
-        return EBeanDAO.getDao();
+        if (!migration.isAccountsNormalized()) {
+            getLogger().info("Normalizing account ids and adding database indexes ...");
+
+            migration.doAccountNormalization();
+        }
+
+        DAO backend;
+
+        if ("jdbc".equalsIgnoreCase(CONF.databaseBackend)) {
+            backend = new JdbcDAO(replaceDatabaseString("jdbc:sqlite:{DIR}{NAME}.db"), CONF.databasePoolSize);
+        } else {
+            backend = EBeanDAO.getDao();
+        }
+
+        if (CONF.ledgerEnabled) {
+            return new LedgerDAO(backend, CONF.ledgerFlushInterval);
+        }
+
+        return backend;
     }
 
     /**
@@ -574,6 +637,42 @@ public class Gringotts extends JavaPlugin {
         return accounting;
     }
 
+    /**
+     * Gets the dispatcher for main thread work.
+     *
+     * @return the dispatcher
+     */
+    public MainThreadDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Gets the transaction journal.
+     *
+     * @return the transaction journal, or null if journaling is disabled
+     */
+    public TransactionJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Gets the last known values of vaults.
+     *
+     * @return the vault snapshots
+     */
+    public VaultSnapshots getVaultSnapshots() {
+        return vaultSnapshots;
+    }
+
+    /**
+     * Gets the sweeper removing orphaned vaults.
+     *
+     * @return the vault sweeper
+     */
+    public VaultSweeper getVaultSweeper() {
+        return vaultSweeper;
+    }
+
     /**
      * Gets eco.
      *
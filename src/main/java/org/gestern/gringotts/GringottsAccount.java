@@ -2,16 +2,23 @@ package org.gestern.gringotts;
 
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.block.Sign;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.gestern.gringotts.accountholder.AccountHolder;
 import org.gestern.gringotts.accountholder.PlayerAccountHolder;
 import org.gestern.gringotts.api.TransactionResult;
 import org.gestern.gringotts.currency.Denomination;
+import org.gestern.gringotts.data.ChestIndex;
 import org.gestern.gringotts.data.DAO;
+import org.gestern.gringotts.data.VaultSnapshots;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.*;
 
@@ -28,7 +35,6 @@ import static org.gestern.gringotts.api.TransactionResult.*;
  */
 public class GringottsAccount {
     public final AccountHolder owner;
-    private final DAO dao = Gringotts.getInstance().getDao();
 
     public GringottsAccount(AccountHolder owner) {
         if (owner == null) {
@@ -38,6 +44,10 @@ public class GringottsAccount {
         this.owner = owner;
     }
 
+    private static DAO dao() {
+        return Gringotts.getInstance().getDao();
+    }
+
     /**
      * Call a function in the main thread. The returned CompletionStage will be completed after the function is called.
      *
@@ -45,23 +55,22 @@ public class GringottsAccount {
      * @return will be completed after function is called
      */
     private static <V> CompletableFuture<V> callSync(Callable<V> callMe) {
-        final CompletableFuture<V> f = new CompletableFuture<>();
-
-        Runnable runMe = () -> {
-            try {
-                f.complete(callMe.call());
-            } catch (Exception e) {
-                f.completeExceptionally(e);
-            }
-        };
-
-        if (Bukkit.isPrimaryThread()) {
-            runMe.run();
-        } else {
-            Bukkit.getScheduler().scheduleSyncDelayedTask(Gringotts.getInstance(), runMe);
-        }
+        return Gringotts.getInstance().getDispatcher().submit(callMe);
+    }
 
-        return f;
+    /**
+     * Call a function in the main thread, sharing the result with identical requests for this account that are
+     * waiting for the same tick.
+     *
+     * @param request identifies the kind of request
+     * @param callMe  function to call
+     * @return will be completed after function is called
+     */
+    private <V> CompletableFuture<V> callSync(String request, Callable<V> callMe) {
+        return Gringotts.getInstance().getDispatcher().submit(
+                owner.getType() + ":" + owner.getId() + ":" + request,
+                callMe
+        );
     }
 
     /**
@@ -70,16 +79,16 @@ public class GringottsAccount {
      * @return current balance of this account in cents
      */
     public long getBalance() {
-        CompletableFuture<Long> cents = getCents();
-        CompletableFuture<Long> playerInv = countPlayerInventory();
-        CompletableFuture<Long> chestInv = countChestInventories();
-
-        // order of combination is important, because chestInv/playerInv might have to run on main thread
-        CompletableFuture<Long> f = chestInv
-                .thenCombine(playerInv, Long::sum)
-                .thenCombine(cents, Long::sum);
+        return getTimeout(getBalance(storageExecutor()));
+    }
 
-        return getTimeout(f);
+    /**
+     * Current balance of this account in cents, without blocking the calling thread.
+     *
+     * @return completed with the current balance of this account in cents
+     */
+    public CompletableFuture<Long> getBalanceAsync() {
+        return getBalance(ForkJoinPool.commonPool());
     }
 
     /**
@@ -88,7 +97,17 @@ public class GringottsAccount {
      * @return current balance this account has in chest(s) in cents
      */
     public long getVaultBalance() {
-        return getTimeout(countChestInventories());
+        return getTimeout(callSync("vault", this::countChestInventories));
+    }
+
+    /**
+     * Age of the oldest last known vault value that the balance of this account is based on. Only vaults in chunks
+     * that are not loaded are counted from their last known value, and only if configured.
+     *
+     * @return age in milliseconds, or 0 if the balance is based on the current contents of all vaults
+     */
+    public long getBalanceAge() {
+        return getTimeout(callSync("age", this::countSnapshotAge));
     }
 
     /**
@@ -97,9 +116,8 @@ public class GringottsAccount {
      * @return current balance this account has in inventory in cents
      */
     public long getInvBalance() {
-        CompletableFuture<Long> cents = getCents();
-        CompletableFuture<Long> playerInv = countPlayerInventory();
-        CompletableFuture<Long> f = cents.thenCombine(playerInv, Long::sum);
+        CompletableFuture<Long> cents = getCents(storageExecutor());
+        CompletableFuture<Long> f = callSync("inventory", this::countPlayerInventory).thenCombine(cents, Long::sum);
 
         return getTimeout(f);
     }
@@ -111,39 +129,56 @@ public class GringottsAccount {
      * @return Whether amount successfully added
      */
     public TransactionResult add(long amount) {
-        Callable<TransactionResult> callMe = () -> {
-            // Cannot add negative amount
-            if (amount < 0) {
-                return ERROR;
-            }
+        return await(add(amount, storageExecutor()));
+    }
 
-            long centsStored = dao.retrieveCents(this);
+    /**
+     * Add an amount in cents to this account if able to, without blocking the calling thread.
+     *
+     * @param amount amount in cents to add
+     * @return completed with whether amount successfully added
+     */
+    public CompletableFuture<TransactionResult> addAsync(long amount) {
+        return add(amount, ForkJoinPool.commonPool());
+    }
 
-            long remaining = amount + centsStored;
+    /**
+     * Attempt to remove an amount in cents from this account.
+     * If the account contains less than the specified amount, returns false
+     *
+     * @param amount amount in cents to remove
+     * @return amount actually removed.
+     */
+    public TransactionResult remove(long amount) {
+        return await(remove(amount, storageExecutor()));
+    }
 
-            // add currency to account's vaults
-            if (CONF.usevaultContainer) {
-                for (AccountChest chest : dao.retrieveChests(this)) {
-                    remaining -= chest.add(remaining);
+    /**
+     * Attempt to remove an amount in cents from this account, without blocking the calling thread.
+     *
+     * @param amount amount in cents to remove
+     * @return completed with the result of removing
+     */
+    public CompletableFuture<TransactionResult> removeAsync(long amount) {
+        return remove(amount, ForkJoinPool.commonPool());
+    }
 
-                    if (remaining <= 0) {
-                        break;
-                    }
-                }
-            }
+    private CompletableFuture<Long> getBalance(Executor storage) {
+        CompletableFuture<Long> cents = getCents(storage);
 
-            // add stuff to player's inventory and enderchest too, when they are online
-            Optional<Player> playerOpt = playerOwner();
+        return callSync("balance", () -> countChestInventories() + countPlayerInventory())
+                .thenCombine(cents, Long::sum);
+    }
 
-            if (playerOpt.isPresent()) {
-                Player player = playerOpt.get();
+    private CompletableFuture<TransactionResult> add(long amount, Executor storage) {
+        // Cannot add negative amount
+        if (amount < 0) {
+            return CompletableFuture.completedFuture(ERROR);
+        }
 
-                if (USE_VAULT_INVENTORY.isAllowed(player)) {
-                    remaining -= new AccountInventory(player.getInventory()).add(remaining);
-                }
-                if (CONF.usevaultEnderchest && USE_VAULT_ENDERCHEST.isAllowed(player)) {
-                    remaining -= new AccountInventory(player.getEnderChest()).add(remaining);
-                }
+        return callSync(() -> addPhysical(amount)).thenCompose(remaining -> {
+            if (remaining == 0) {
+                return CompletableFuture.completedFuture(SUCCESS);
             }
 
             // allow smallest denom value as threshold for available space
@@ -153,93 +188,226 @@ public class GringottsAccount {
             long smallestDenomValue = denoms.get(denoms.size() - 1).getValue();
 
             if (remaining < smallestDenomValue) {
-                dao.storeCents(this, remaining);
-                remaining = 0;
+                return CompletableFuture.supplyAsync(() -> addCents(remaining), storage).thenCompose(cents -> {
+                    if (cents < 0) {
+                        return CompletableFuture.completedFuture(ERROR);
+                    }
+
+                    if (cents < smallestDenomValue) {
+                        return CompletableFuture.completedFuture(SUCCESS);
+                    }
+
+                    return consolidate(cents, storage).thenApply(ignored -> SUCCESS);
+                });
             }
 
-            if (remaining == 0) {
-                return SUCCESS;
-            } else {
+            return callSync(() -> {
+                dropOverflow(remaining);
 
-                if (CONF.dropOverflowingItem) {
-                    for (Denomination denomination : CONF.getCurrency().getDenominations()) {
-                        if (denomination.getValue() <= remaining) {
-                            ItemStack stack = new ItemStack(denomination.getKey().type);
-                            int stackSize = stack.getMaxStackSize();
-                            long denItemCount = denomination.getValue() > 0 ? remaining / denomination.getValue() : 0;
-                            while (denItemCount > 0) {
-                                int remainderStackSize = denItemCount > stackSize ? stackSize : (int) denItemCount;
-                                stack.setAmount(remainderStackSize);
-                                denItemCount -= remainderStackSize;
-                                remaining -= remainderStackSize * denomination.getValue();
-                                playerOpt.get().getWorld().dropItem(playerOpt.get().getLocation(), stack);
-                            }
-                        }
+                return INSUFFICIENT_SPACE;
+            });
+        });
+    }
+
+    private CompletableFuture<TransactionResult> remove(long amount, Executor storage) {
+        // Cannot remove negative amount
+        if (amount < 0) {
+            return CompletableFuture.completedFuture(ERROR);
+        }
+
+        return getCents(storage).thenCompose(cents -> callSync(() -> removePhysical(amount, cents)))
+                .thenCompose(virtual -> {
+                    // Make sure we have enough to remove
+                    if (!virtual.isPresent()) {
+                        return CompletableFuture.completedFuture(INSUFFICIENT_FUNDS);
                     }
-                }
 
-                return INSUFFICIENT_SPACE;
+                    long remaining = virtual.get();
+
+                    if (remaining == 0) {
+                        return CompletableFuture.completedFuture(SUCCESS);
+                    }
+
+                    // a positive remainder cannot be represented in our denominations, take it from the virtual
+                    // reserve. a negative one is change that did not fit, put it into the virtual reserve.
+                    return CompletableFuture.supplyAsync(() -> addCents(-remaining), storage)
+                            .thenCompose(stored -> {
+                                if (stored >= 0) {
+                                    return CompletableFuture.completedFuture(SUCCESS);
+                                }
+
+                                // the virtual reserve was spent in the meantime, give back what was taken so far
+                                return add(amount - remaining, storage).thenApply(refund -> INSUFFICIENT_FUNDS);
+                            });
+                });
+    }
+
+    /**
+     * Move virtual cents that add up to at least the smallest denomination into items, so that the virtual balance
+     * only holds what items can't represent. The cents are taken from the virtual balance first, and whatever does
+     * not fit is put back, so concurrent changes of the virtual balance are never overwritten.
+     *
+     * @param cents   virtual cents to move into items
+     * @param storage executor for storage access
+     * @return completed when the cents were moved
+     */
+    private CompletableFuture<Void> consolidate(long cents, Executor storage) {
+        return CompletableFuture.supplyAsync(() -> addCents(-cents) >= 0, storage).thenCompose(taken -> {
+            if (!taken) {
+                // spent in the meantime, nothing to move
+                return CompletableFuture.completedFuture(null);
             }
-        };
 
-        return getTimeout(callSync(callMe));
+            return callSync(() -> addPhysical(cents))
+                    .handle((remaining, e) -> e != null ? cents : remaining)
+                    .thenAcceptAsync(remaining -> {
+                        if (remaining > 0) {
+                            addCents(remaining);
+                        }
+                    }, storage);
+        });
     }
 
     /**
-     * Attempt to remove an amount in cents from this account.
-     * If the account contains less than the specified amount, returns false
+     * Add an amount to the vaults and inventories of this account. Must be called on the main thread.
      *
-     * @param amount amount in cents to remove
-     * @return amount actually removed.
+     * @param amount amount in cents to add
+     * @return amount in cents that could not be added
      */
-    public TransactionResult remove(long amount) {
-        Callable<TransactionResult> callMe = () -> {
-            // Cannot remove negative amount
-            if (amount < 0) {
-                return ERROR;
+    private long addPhysical(long amount) {
+        long remaining = amount;
+        long vaultDelta = 0;
+
+        // add currency to account's vaults
+        if (CONF.usevaultContainer) {
+            for (AccountChest chest : Gringotts.getInstance().getAccounting().getChests(this)) {
+                long added = chest.add(remaining);
+
+                remaining -= added;
+                vaultDelta += added;
+
+                if (remaining <= 0) {
+                    break;
+                }
             }
+        }
+
+        // add stuff to player's inventory and enderchest too, when they are online
+        Optional<Player> playerOpt = playerOwner();
 
-            // Make sure we have enough to remove
-            if (getBalance() < amount) {
-                return INSUFFICIENT_FUNDS;
+        if (playerOpt.isPresent()) {
+            Player player = playerOpt.get();
+
+            if (USE_VAULT_INVENTORY.isAllowed(player)) {
+                remaining -= new AccountInventory(player.getInventory()).add(remaining);
+            }
+            if (CONF.usevaultEnderchest && USE_VAULT_ENDERCHEST.isAllowed(player)) {
+                long added = new AccountInventory(player.getEnderChest()).add(remaining);
+
+                remaining -= added;
+                vaultDelta += added;
             }
+        }
+
+        rankVaults(vaultDelta);
 
-            long remaining = amount;
+        return remaining;
+    }
+
+    /**
+     * Drop an amount that did not fit into the account at the owner's feet, if configured and the owner is an online
+     * player. Other owners have nowhere to drop it. Must be called on the main thread.
+     *
+     * @param remaining amount in cents to drop
+     */
+    private void dropOverflow(long remaining) {
+        if (CONF.dropOverflowingItem) {
+            playerOwner().ifPresent(player -> dropAt(player, remaining));
+        }
+    }
 
-            // Now remove the physical amount left
-            if (CONF.usevaultContainer) {
-                for (AccountChest chest : dao.retrieveChests(this)) {
-                    remaining -= chest.remove(remaining);
+    private static void dropAt(Player player, long remaining) {
+        for (Denomination denomination : CONF.getCurrency().getDenominations()) {
+            if (denomination.getValue() <= remaining) {
+                ItemStack stack = new ItemStack(denomination.getKey().type);
+                int stackSize = stack.getMaxStackSize();
+                long denItemCount = denomination.getValue() > 0 ? remaining / denomination.getValue() : 0;
+                while (denItemCount > 0) {
+                    int remainderStackSize = denItemCount > stackSize ? stackSize : (int) denItemCount;
+                    stack.setAmount(remainderStackSize);
+                    denItemCount -= remainderStackSize;
+                    remaining -= remainderStackSize * denomination.getValue();
+                    player.getWorld().dropItem(player.getLocation(), stack);
                 }
             }
+        }
+    }
+
+    /**
+     * Remove an amount from the vaults and inventories of this account, planning the whole withdrawal on a single
+     * snapshot of the inventories. Must be called on the main thread.
+     *
+     * @param amount amount in cents to remove
+     * @param cents  virtual cents currently stored for this account
+     * @return amount in cents still to be taken from the virtual cents (negative to add to them), or empty if the
+     * account does not hold enough
+     */
+    private Optional<Long> removePhysical(long amount, long cents) {
+        WithdrawalPlanner planner = planner();
+
+        if (planner.balance() + cents < amount) {
+            return Optional.empty();
+        }
 
-            Optional<Player> playerOpt = playerOwner();
+        long remaining = planner.plan(amount);
 
-            if (playerOpt.isPresent()) {
-                Player player = playerOpt.get();
+        rankVaults(planner.commit());
 
-                if (USE_VAULT_INVENTORY.isAllowed(player)) {
-                    remaining -= new AccountInventory(player.getInventory()).remove(remaining);
-                }
-                if (CONF.usevaultEnderchest && USE_VAULT_ENDERCHEST.isAllowed(player)) {
-                    remaining -= new AccountInventory(player.getEnderChest()).remove(remaining);
+        return Optional.of(remaining);
+    }
+
+    /**
+     * Planner over all inventories usable as vault of this account, in order of use. Must be called on the main
+     * thread.
+     *
+     * @return planner over the inventories of this account
+     */
+    WithdrawalPlanner planner() {
+        List<Inventory> inventories = new ArrayList<>();
+        Map<Inventory, ChestIndex.Entry> vaults = new IdentityHashMap<>();
+
+        if (CONF.usevaultContainer) {
+            for (AccountChest chest : Gringotts.getInstance().getAccounting().getChests(this)) {
+                Inventory inventory = chest.validInventory();
+
+                if (inventory != null) {
+                    inventories.add(inventory);
+                    vaults.put(inventory, new ChestIndex.Entry(
+                            chest.sign.getWorld().getName(),
+                            chest.sign.getX(),
+                            chest.sign.getY(),
+                            chest.sign.getZ(),
+                            owner.getType(),
+                            owner.getId()
+                    ));
                 }
             }
+        }
 
-            if (remaining < 0)
-                // took too much, pay back the extra
-                return add(-remaining);
+        Optional<Player> playerOpt = playerOwner();
 
-            if (remaining > 0) {
-                // cannot represent the leftover in our denominations, take them from the virtual reserve
-                long cents = dao.retrieveCents(this);
-                dao.storeCents(this, cents - remaining);
-            }
+        if (playerOpt.isPresent()) {
+            Player player = playerOpt.get();
 
-            return SUCCESS;
-        };
+            if (USE_VAULT_INVENTORY.isAllowed(player)) {
+                inventories.add(player.getInventory());
+            }
+            if (CONF.usevaultEnderchest && USE_VAULT_ENDERCHEST.isAllowed(player)) {
+                inventories.add(player.getEnderChest());
+            }
+        }
 
-        return getTimeout(callSync(callMe));
+        return new WithdrawalPlanner(inventories, vaults);
     }
 
     @Override
@@ -263,49 +431,160 @@ public class GringottsAccount {
         return Optional.empty();
     }
 
-    private CompletableFuture<Long> countChestInventories() {
-        Callable<Long> callMe = () -> {
-            List<AccountChest> chests = dao.retrieveChests(this);
-            long balance = 0;
+    /**
+     * Change the virtual cents of this account and update its rank.
+     *
+     * @param delta change in cents
+     * @return the new virtual cents, or a negative value if they could not be changed
+     */
+    private long addCents(long delta) {
+        long cents = dao().addCents(this, delta);
+
+        if (cents >= 0) {
+            Gringotts.getInstance().getAccounting().getLeaderboard().updateVirtual(owner, cents);
+        }
+
+        return cents;
+    }
 
-            if (CONF.usevaultContainer) {
-                for (AccountChest chest : chests) {
+    /**
+     * Update the rank of this account after Gringotts changed its vaults. Vaults that were not counted since startup
+     * are counted now. Must be called on the main thread.
+     *
+     * @param delta change of the value of the vaults in cents, not counting the player's inventory
+     */
+    void rankVaults(long delta) {
+        if (!Gringotts.getInstance().getAccounting().getLeaderboard().adjustVault(owner, delta)) {
+            countChestInventories();
+        }
+    }
+
+    private long countChestInventories() {
+        long balance = 0;
+
+        if (CONF.usevaultContainer) {
+            if (CONF.vaultSnapshots) {
+                balance += countVaultsOrSnapshots();
+            } else {
+                for (AccountChest chest : Gringotts.getInstance().getAccounting().getChests(this)) {
                     balance += chest.balance();
                 }
             }
+        }
 
-            Optional<Player> playerOpt = playerOwner();
-            if (playerOpt.isPresent()) {
-                Player player = playerOpt.get();
+        Optional<Player> playerOpt = playerOwner();
+        if (playerOpt.isPresent()) {
+            Player player = playerOpt.get();
 
-                if (CONF.usevaultEnderchest && USE_VAULT_ENDERCHEST.isAllowed(player)) {
-                    balance += new AccountInventory(player.getEnderChest()).balance();
-                }
+            if (CONF.usevaultEnderchest && USE_VAULT_ENDERCHEST.isAllowed(player)) {
+                balance += new AccountInventory(player.getEnderChest()).balance();
             }
-            return balance;
-        };
+        }
 
-        return callSync(callMe);
+        Gringotts.getInstance().getAccounting().getLeaderboard().updateVault(owner, balance);
+
+        return balance;
     }
 
-    private CompletableFuture<Long> countPlayerInventory() {
-        Callable<Long> callMe = () -> {
-            long balance = 0;
+    /**
+     * Count the vaults of this account, using the last known value of vaults in chunks that are not loaded instead of
+     * loading the chunk. Vaults that were never counted are loaded. Must be called on the main thread.
+     *
+     * @return value of the vaults in cents
+     */
+    private long countVaultsOrSnapshots() {
+        long balance = 0;
+
+        for (ChestIndex.Entry vault : dao().retrieveChestLocations(owner)) {
+            World world = Bukkit.getWorld(vault.world);
+
+            if (world == null) {
+                continue;
+            }
+
+            VaultSnapshots.Snapshot snapshot = snapshotFor(world, vault);
 
-            Optional<Player> playerOpt = playerOwner();
-            if (playerOpt.isPresent() && USE_VAULT_INVENTORY.isAllowed(playerOpt.get())) {
-                Player player = playerOpt.get();
+            if (snapshot != null) {
+                balance += snapshot.cents;
 
-                balance += new AccountInventory(player.getInventory()).balance();
+                continue;
             }
-            return balance;
-        };
 
-        return callSync(callMe);
+            Optional<Sign> sign = Util.getBlockStateAs(world.getBlockAt(vault.x, vault.y, vault.z), Sign.class);
+
+            if (sign.isPresent()) {
+                balance += new AccountChest(sign.get(), this).balance();
+            }
+        }
+
+        return balance;
+    }
+
+    /**
+     * Age of the oldest vault snapshot the balance of this account is currently based on. Must be called on the main
+     * thread.
+     *
+     * @return age in milliseconds, or 0 if all vaults are counted from their contents
+     */
+    private long countSnapshotAge() {
+        if (!CONF.usevaultContainer || !CONF.vaultSnapshots) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        long oldest = now;
+
+        for (ChestIndex.Entry vault : dao().retrieveChestLocations(owner)) {
+            World world = Bukkit.getWorld(vault.world);
+            VaultSnapshots.Snapshot snapshot = world != null ? snapshotFor(world, vault) : null;
+
+            if (snapshot != null) {
+                oldest = Math.min(oldest, snapshot.time);
+            }
+        }
+
+        return Math.max(0, now - oldest);
+    }
+
+    /**
+     * The snapshot that balance reads use for a vault: its last known value, if its chunk is not loaded.
+     *
+     * @param world world of the vault
+     * @param vault stored location of the vault
+     * @return the snapshot, or null if the vault is counted from its contents
+     */
+    private static VaultSnapshots.Snapshot snapshotFor(World world, ChestIndex.Entry vault) {
+        if (world.isChunkLoaded(vault.x >> 4, vault.z >> 4)) {
+            return null;
+        }
+
+        return Gringotts.getInstance().getVaultSnapshots().get(vault);
     }
 
-    private CompletableFuture<Long> getCents() {
-        return CompletableFuture.supplyAsync(() -> dao.retrieveCents(this));
+    private long countPlayerInventory() {
+        long balance = 0;
+
+        Optional<Player> playerOpt = playerOwner();
+        if (playerOpt.isPresent() && USE_VAULT_INVENTORY.isAllowed(playerOpt.get())) {
+            Player player = playerOpt.get();
+
+            balance += new AccountInventory(player.getInventory()).balance();
+        }
+        return balance;
+    }
+
+    private CompletableFuture<Long> getCents(Executor storage) {
+        return CompletableFuture.supplyAsync(() -> dao().retrieveCents(this), storage);
+    }
+
+    /**
+     * Executor for storage access of the blocking methods. On the main thread, storage is accessed directly,
+     * since every main thread step of the operation has to run inline while the main thread waits for the result.
+     *
+     * @return executor for storage access
+     */
+    private static Executor storageExecutor() {
+        return Bukkit.isPrimaryThread() ? Runnable::run : ForkJoinPool.commonPool();
     }
 
     private <V> V getTimeout(CompletableFuture<V> f) {
@@ -316,4 +595,16 @@ public class GringottsAccount {
         }
     }
 
+    /**
+     * Wait for a change of this account without a timeout. Once queued, a change runs no matter how long the caller
+     * waited, so giving up early would report a failure for money that still moves.
+     */
+    private <V> V await(CompletableFuture<V> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new GringottsException(e);
+        }
+    }
+
 }
@@ -0,0 +1,174 @@
+package org.gestern.gringotts;
+
+/**
+ * Computes how currency items are put into an inventory, working on the slot amounts only.
+ * <p>
+ * Items are placed with the same rules as Bukkit's Inventory.addItem: each item first tops up the first stack of
+ * the same kind that is not full, and otherwise goes into the first empty slot. The result is the same as adding
+ * the items with addItem, but without touching the inventory for every stack.
+ */
+public class InventoryFillEngine {
+
+    /**
+     * Kind of an empty slot.
+     */
+    public static final int EMPTY = -1;
+
+    /**
+     * Kind of a slot holding anything that is not a denomination.
+     */
+    public static final int OTHER = -2;
+
+    private final int[] kinds;
+    private final int[] amounts;
+    private final int[] originalKinds;
+    private final int[] originalAmounts;
+    private final int inventoryMaxStackSize;
+
+    /**
+     * Create an engine for an inventory layout.
+     *
+     * @param kinds                 for every slot, the index of the denomination it holds, {@link #EMPTY} or
+     *                              {@link #OTHER}
+     * @param amounts               for every slot, the number of items it holds
+     * @param inventoryMaxStackSize maximum stack size the inventory allows in a slot
+     */
+    public InventoryFillEngine(int[] kinds, int[] amounts, int inventoryMaxStackSize) {
+        if (kinds.length != amounts.length) {
+            throw new IllegalArgumentException("kinds and amounts must have the same length");
+        }
+
+        this.kinds = kinds.clone();
+        this.amounts = amounts.clone();
+        this.originalKinds = kinds;
+        this.originalAmounts = amounts;
+        this.inventoryMaxStackSize = inventoryMaxStackSize;
+    }
+
+    /**
+     * Add a value to the layout, trying denominations from largest to smallest.
+     *
+     * @param value         value to add
+     * @param values        value of every denomination, in order of descending value
+     * @param maxStackSizes maximum stack size of every denomination's item
+     * @return value actually added
+     */
+    public long fill(long value, long[] values, int[] maxStackSizes) {
+        long remaining = value;
+
+        for (int denomination = 0; denomination < values.length; denomination++) {
+            long denominationValue = values[denomination];
+
+            if (denominationValue <= 0 || denominationValue > remaining) {
+                continue;
+            }
+
+            long count = remaining / denominationValue;
+            int stackSize = maxStackSizes[denomination];
+
+            // add stacks in this denomination until stuff is returned
+            while (count > 0) {
+                int stack = count > stackSize ? stackSize : (int) count;
+                int returned = addItem(denomination, stack, stackSize);
+                long added = (long) stack - returned;
+
+                count -= added;
+                remaining -= added * denominationValue;
+
+                // no more space for this denomination
+                if (returned > 0) {
+                    break;
+                }
+            }
+        }
+
+        return value - remaining;
+    }
+
+    /**
+     * Put a stack of items of one kind into the layout.
+     *
+     * @param kind             denomination index of the items
+     * @param amount           number of items
+     * @param itemMaxStackSize maximum stack size of the item
+     * @return number of items that did not fit
+     */
+    private int addItem(int kind, int amount, int itemMaxStackSize) {
+        int remaining = amount;
+
+        while (remaining > 0) {
+            int partial = firstPartial(kind, itemMaxStackSize);
+
+            if (partial >= 0) {
+                int put = Math.min(remaining, itemMaxStackSize - amounts[partial]);
+
+                amounts[partial] += put;
+                remaining -= put;
+            } else {
+                int empty = firstEmpty();
+
+                if (empty < 0) {
+                    break;
+                }
+
+                int put = Math.min(remaining, inventoryMaxStackSize);
+
+                kinds[empty] = kind;
+                amounts[empty] = put;
+                remaining -= put;
+            }
+        }
+
+        return remaining;
+    }
+
+    private int firstPartial(int kind, int itemMaxStackSize) {
+        for (int slot = 0; slot < kinds.length; slot++) {
+            if (kinds[slot] == kind && amounts[slot] < itemMaxStackSize) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    private int firstEmpty() {
+        for (int slot = 0; slot < kinds.length; slot++) {
+            if (kinds[slot] == EMPTY) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Whether a slot differs from the layout the engine was created with.
+     *
+     * @param slot slot index
+     * @return true if the slot changed
+     */
+    public boolean changed(int slot) {
+        return kinds[slot] != originalKinds[slot] || amounts[slot] != originalAmounts[slot];
+    }
+
+    /**
+     * Kind of a slot in the computed layout.
+     *
+     * @param slot slot index
+     * @return denomination index, {@link #EMPTY} or {@link #OTHER}
+     */
+    public int kind(int slot) {
+        return kinds[slot];
+    }
+
+    /**
+     * Number of items in a slot in the computed layout.
+     *
+     * @param slot slot index
+     * @return number of items
+     */
+    public int amount(int slot) {
+        return amounts[slot];
+    }
+}
@@ -48,6 +48,12 @@ public enum Language {
     public String moneyadmin_rm_sender;
     public String moneyadmin_rm_target;
     public String moneyadmin_rm_error;
+    public String moneyadmin_bulk_sender;
+    public String moneyadmin_bulk_error;
+    public String moneyadmin_bulk_file;
+    //baltop command
+    public String baltop_header;
+    public String baltop_entry;
     //gringotts vaults
     public String vault_created;
     public String vault_error;
@@ -156,6 +162,23 @@ public enum Language {
         LANG.moneyadmin_rm_error = translator.apply(
                 "moneyadmin.rm.error",
                 "Could not remove %value from account %player");
+        LANG.moneyadmin_bulk_sender = translator.apply(
+                "moneyadmin.bulk.sender",
+                "Paid %value to %count accounts");
+        LANG.moneyadmin_bulk_error = translator.apply(
+                "moneyadmin.bulk.error",
+                "Could not pay %value to account %player");
+        LANG.moneyadmin_bulk_file = translator.apply(
+                "moneyadmin.bulk.file",
+                "Could not read payouts from %file");
+
+        //baltop command
+        LANG.baltop_header = translator.apply(
+                "baltop.header",
+                "Top balances (page %page of %pages):");
+        LANG.baltop_entry = translator.apply(
+                "baltop.entry",
+                "%rank. %player: %balance");
 
         //gringotts vaults
         LANG.vault_created = translator.apply(
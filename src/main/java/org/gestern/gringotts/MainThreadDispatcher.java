@@ -0,0 +1,128 @@
+package org.gestern.gringotts;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs work from other threads on the main thread.
+ * <p>
+ * Instead of scheduling a task per call, work is queued and drained by a single repeating task, which stops each
+ * tick when its time budget is used up. Keyed work that is still waiting in the queue is shared between callers
+ * requesting the same key, so identical requests within a tick are only executed once.
+ */
+public class MainThreadDispatcher {
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final Map<Object, CompletableFuture<?>> pending = new ConcurrentHashMap<>();
+    private final long budgetNanos;
+    private final BukkitTask task;
+
+    /**
+     * Start draining queued work every tick.
+     *
+     * @param plugin       plugin owning the drain task
+     * @param budgetMillis milliseconds of main thread time to spend per tick. At least one piece of work is run
+     *                     every tick.
+     */
+    public MainThreadDispatcher(Plugin plugin, long budgetMillis) {
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.task = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1, 1);
+    }
+
+    private static <V> void complete(CompletableFuture<V> f, Callable<V> callMe) {
+        try {
+            f.complete(callMe.call());
+        } catch (Exception e) {
+            f.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Call a function in the main thread. The returned CompletableFuture will be completed after the function is
+     * called. On the main thread, the function is called immediately.
+     *
+     * @param callMe function to call
+     * @param <V>    result type of the function
+     * @return will be completed after function is called
+     */
+    public <V> CompletableFuture<V> submit(Callable<V> callMe) {
+        CompletableFuture<V> f = new CompletableFuture<>();
+
+        if (Bukkit.isPrimaryThread()) {
+            complete(f, callMe);
+        } else {
+            queue.add(() -> complete(f, callMe));
+        }
+
+        return f;
+    }
+
+    /**
+     * Call a function in the main thread, sharing the result with other calls for the same key that are queued
+     * before the function runs. On the main thread, the function is called immediately.
+     *
+     * @param key    identifies equivalent calls
+     * @param callMe function to call
+     * @param <V>    result type of the function
+     * @return will be completed after function is called
+     */
+    @SuppressWarnings("unchecked")
+    public <V> CompletableFuture<V> submit(Object key, Callable<V> callMe) {
+        if (Bukkit.isPrimaryThread()) {
+            return submit(callMe);
+        }
+
+        CompletableFuture<V> f = new CompletableFuture<>();
+        CompletableFuture<?> existing = pending.putIfAbsent(key, f);
+
+        if (existing != null) {
+            return (CompletableFuture<V>) existing;
+        }
+
+        queue.add(() -> {
+            // calls from now on need a fresh result
+            pending.remove(key, f);
+            complete(f, callMe);
+        });
+
+        return f;
+    }
+
+    /**
+     * Run queued work until the queue is empty or the time budget of this tick is used up.
+     */
+    private void drain() {
+        long deadline = System.nanoTime() + budgetNanos;
+        Runnable next;
+
+        while ((next = queue.poll()) != null) {
+            next.run();
+
+            if (System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Stop the drain task and run all remaining work. Must be called on the main thread.
+     */
+    public void shutdown() {
+        task.cancel();
+
+        Runnable next;
+
+        while ((next = queue.poll()) != null) {
+            next.run();
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package org.gestern.gringotts;
+
+import org.gestern.gringotts.api.TransactionResult;
+import org.gestern.gringotts.currency.Denomination;
+import org.gestern.gringotts.data.AccountIds;
+import org.gestern.gringotts.data.DAO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+
+import static org.gestern.gringotts.Configuration.CONF;
+import static org.gestern.gringotts.api.TransactionResult.*;
+
+/**
+ * Moves money between accounts as one planned operation.
+ * <p>
+ * Transfers and payouts are planned and committed on the main thread, one at a time, so they can't interleave with
+ * each other or with anything else that changes inventories. Virtual balances may also be changed off the main
+ * thread, by deposits and withdrawals of single accounts. These changes are atomic in storage, and a withdrawal of
+ * virtual cents that are no longer there is refused when the transfer is committed. Withdrawal, deposit and taxes are
+ * planned together on snapshots of the inventories involved. Only when the whole plan works out are the virtual balances changed, in a single storage
+ * batch, and the planned inventories written back. A transfer that fails changes nothing, so there is nothing to
+ * refund.
+ */
+public class TransferEngine {
+
+    private static String accountKey(GringottsAccount account) {
+        return AccountIds.key(account.owner.getType(), account.owner.getId());
+    }
+
+    /**
+     * Transfer money between accounts, waiting for the result as long as it takes.
+     *
+     * @param from      account to take the amount and taxes from
+     * @param to        account to give the amount to
+     * @param amount    amount in cents
+     * @param tax       taxes in cents, taken from the sender in addition to the amount
+     * @param collector account receiving the taxes, or null if taxes are not collected
+     * @return result of the transfer
+     */
+    public TransactionResult transfer(GringottsAccount from,
+                                      GringottsAccount to,
+                                      long amount,
+                                      long tax,
+                                      GringottsAccount collector) {
+        // no timeout: a queued transfer runs anyway, the caller must not be told it failed
+        try {
+            return transferAsync(from, to, amount, tax, collector).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new GringottsException(e);
+        }
+    }
+
+    /**
+     * Transfer money between accounts, without blocking the calling thread. The transfer is planned and executed on
+     * the main thread, on the calling thread if that is the main thread.
+     *
+     * @param from      account to take the amount and taxes from
+     * @param to        account to give the amount to
+     * @param amount    amount in cents
+     * @param tax       taxes in cents, taken from the sender in addition to the amount
+     * @param collector account receiving the taxes, or null if taxes are not collected
+     * @return completed with the result of the transfer
+     */
+    public CompletableFuture<TransactionResult> transferAsync(GringottsAccount from,
+                                                              GringottsAccount to,
+                                                              long amount,
+                                                              long tax,
+                                                              GringottsAccount collector) {
+        if (amount < 0 || tax < 0) {
+            return CompletableFuture.completedFuture(ERROR);
+        }
+
+        return Gringotts.getInstance().getDispatcher().submit(() -> execute(from, to, amount, tax, collector));
+    }
+
+    /**
+     * Add amounts to several accounts at once, waiting for the results as long as it takes.
+     *
+     * @param payouts amount in cents to add to each account
+     * @return result for each account
+     */
+    public Map<GringottsAccount, TransactionResult> payout(Map<GringottsAccount, Long> payouts) {
+        // no timeout: a payout can't be taken back once it started, so the caller must not be told it failed
+        try {
+            return payoutAsync(payouts).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new GringottsException(e);
+        }
+    }
+
+    /**
+     * Add amounts to several accounts at once, without blocking the calling thread. All deposits into inventories
+     * are done on the main thread within one tick, and all changes of virtual balances are written in one storage
+     * batch. Each account either receives its whole amount or nothing. When storing fails, no account is paid.
+     *
+     * @param payouts amount in cents to add to each account
+     * @return completed with the result for each account
+     */
+    public CompletableFuture<Map<GringottsAccount, TransactionResult>> payoutAsync(
+            Map<GringottsAccount, Long> payouts) {
+        return Gringotts.getInstance().getDispatcher().submit(() -> executePayout(payouts));
+    }
+
+    private Map<GringottsAccount, TransactionResult> executePayout(Map<GringottsAccount, Long> payouts) {
+        Map<GringottsAccount, TransactionResult> results = new LinkedHashMap<>();
+        Map<String, GringottsAccount> involved = new LinkedHashMap<>();
+        Map<String, Long> amounts = new HashMap<>();
+
+        for (Map.Entry<GringottsAccount, Long> payout : payouts.entrySet()) {
+            if (payout.getValue() < 0) {
+                results.put(payout.getKey(), ERROR);
+
+                continue;
+            }
+
+            String key = accountKey(payout.getKey());
+
+            involved.putIfAbsent(key, payout.getKey());
+            amounts.merge(key, payout.getValue(), Long::sum);
+        }
+
+        Map<String, TransactionResult> planned = planPayout(involved, amounts);
+
+        for (GringottsAccount account : payouts.keySet()) {
+            results.putIfAbsent(account, planned.get(accountKey(account)));
+        }
+
+        return results;
+    }
+
+    private TransactionResult execute(GringottsAccount from,
+                                      GringottsAccount to,
+                                      long amount,
+                                      long tax,
+                                      GringottsAccount collector) {
+        Map<String, GringottsAccount> involved = new LinkedHashMap<>();
+
+        involved.put(accountKey(from), from);
+        involved.putIfAbsent(accountKey(to), to);
+
+        if (collector != null && tax > 0) {
+            involved.putIfAbsent(accountKey(collector), collector);
+        }
+
+        // the same account may be passed as different instances, plan each one only once
+        GringottsAccount recipient = involved.get(accountKey(to));
+        GringottsAccount taxCollector = collector != null && tax > 0 ? involved.get(accountKey(collector)) : null;
+
+        return plan(from, recipient, amount, tax, taxCollector);
+    }
+
+    /**
+     * Plan and commit a payout. Must be called on the main thread.
+     */
+    private Map<String, TransactionResult> planPayout(Map<String, GringottsAccount> involved,
+                                                      Map<String, Long> amounts) {
+        DAO dao = Gringotts.getInstance().getDao();
+        Map<String, TransactionResult> results = new HashMap<>();
+        Map<String, WithdrawalPlanner> planners = new HashMap<>();
+        Map<GringottsAccount, Long> virtual = new LinkedHashMap<>();
+        List<Denomination> denoms = CONF.getCurrency().getDenominations();
+        long smallestDenomValue = denoms.get(denoms.size() - 1).getValue();
+
+        for (Map.Entry<String, GringottsAccount> entry : involved.entrySet()) {
+            WithdrawalPlanner planner = planner(planners, entry.getValue());
+            long overflow = planner.deposit(amounts.get(entry.getKey()));
+
+            if (overflow >= smallestDenomValue) {
+                // the planned deposit is discarded with its planner
+                planners.remove(entry.getKey());
+                results.put(entry.getKey(), INSUFFICIENT_SPACE);
+
+                continue;
+            }
+
+            virtual.put(
+                    entry.getValue(),
+                    virtualOverflow(dao, virtual, planner, entry.getValue(), overflow, smallestDenomValue)
+            );
+            results.put(entry.getKey(), SUCCESS);
+        }
+
+        Map<GringottsAccount, Long> stored = new HashMap<>();
+        boolean committed;
+
+        try {
+            // only credits, so a refused one is a storage failure
+            committed = commitVirtual(dao, virtual, stored) == null;
+        } catch (GringottsStorageException e) {
+            Gringotts.getInstance().getLogger().log(Level.WARNING, "Failed to store payout.", e);
+
+            committed = false;
+        }
+
+        if (!committed) {
+            // the whole batch was rolled back, so nobody was paid and every payout can be retried
+            results.replaceAll((key, result) -> result == SUCCESS ? ERROR : result);
+
+            return results;
+        }
+
+        rankVirtual(stored);
+        commitPlanners(planners, involved.values());
+
+        return results;
+    }
+
+    /**
+     * Plan and commit a transfer. Must be called on the main thread.
+     */
+    private TransactionResult plan(GringottsAccount from,
+                                   GringottsAccount to,
+                                   long amount,
+                                   long tax,
+                                   GringottsAccount collector) {
+        DAO dao = Gringotts.getInstance().getDao();
+        Map<String, WithdrawalPlanner> planners = new HashMap<>();
+        Map<GringottsAccount, Long> virtual = new LinkedHashMap<>();
+
+        WithdrawalPlanner source = planner(planners, from);
+
+        if (source.balance() + dao.retrieveCents(from) < amount + tax) {
+            return INSUFFICIENT_FUNDS;
+        }
+
+        // what items can't cover is taken from the virtual balance. change that didn't fit is added to it
+        virtual.merge(from, -source.plan(amount + tax), Long::sum);
+
+        // allow smallest denom value as threshold for available space
+        List<Denomination> denoms = CONF.getCurrency().getDenominations();
+        long smallestDenomValue = denoms.get(denoms.size() - 1).getValue();
+        WithdrawalPlanner target = planner(planners, to);
+        long overflow = target.deposit(amount);
+
+        if (overflow >= smallestDenomValue) {
+            return INSUFFICIENT_SPACE;
+        }
+
+        virtual.merge(to, virtualOverflow(dao, virtual, target, to, overflow, smallestDenomValue), Long::sum);
+
+        if (collector != null) {
+            // taxes are never refused, what doesn't fit into the collector's vaults is kept virtually
+            WithdrawalPlanner taxes = planner(planners, collector);
+            long taxOverflow = taxes.deposit(tax);
+
+            virtual.merge(
+                    collector,
+                    virtualOverflow(dao, virtual, taxes, collector, taxOverflow, smallestDenomValue),
+                    Long::sum
+            );
+        }
+
+        Map<GringottsAccount, Long> stored = new HashMap<>();
+        GringottsAccount refused = commitVirtual(dao, virtual, stored);
+
+        if (refused != null) {
+            // the sender's virtual balance was spent in the meantime, anything else is a storage failure
+            return refused == from ? INSUFFICIENT_FUNDS : ERROR;
+        }
+
+        rankVirtual(stored);
+        commitPlanners(planners, Arrays.asList(from, to, collector));
+
+        return SUCCESS;
+    }
+
+    /**
+     * Write the planned inventories of the given accounts back and update the rank of their vaults. Accounts may be
+     * given more than once, and may be null.
+     */
+    private static void commitPlanners(Map<String, WithdrawalPlanner> planners,
+                                       Collection<GringottsAccount> accounts) {
+        for (GringottsAccount account : accounts) {
+            WithdrawalPlanner planner = account != null ? planners.remove(accountKey(account)) : null;
+
+            if (planner != null) {
+                account.rankVaults(planner.commit());
+            }
+        }
+    }
+
+    /**
+     * Planner over the inventories of an account, shared by all parts of the transfer involving the account.
+     */
+    private static WithdrawalPlanner planner(Map<String, WithdrawalPlanner> planners, GringottsAccount account) {
+        return planners.computeIfAbsent(accountKey(account), k -> account.planner());
+    }
+
+    /**
+     * Change of the virtual balance of an account receiving an amount that its items could not hold. Once that
+     * amount and the virtual cents already stored add up to the smallest denomination, both are deposited into items
+     * together, like a single deposit would. So the virtual balance only holds what items can't represent, as long
+     * as there is space.
+     *
+     * @param dao      storage of the virtual balances
+     * @param virtual  changes of virtual balances planned so far
+     * @param planner  planner over the inventories of the account
+     * @param account  account receiving the amount
+     * @param overflow amount in cents the items could not hold
+     * @param smallest value of the smallest denomination
+     * @return change of the virtual balance, negative when stored cents are moved into items
+     */
+    private static long virtualOverflow(DAO dao,
+                                        Map<GringottsAccount, Long> virtual,
+                                        WithdrawalPlanner planner,
+                                        GringottsAccount account,
+                                        long overflow,
+                                        long smallest) {
+        long stored = dao.retrieveCents(account) + virtual.getOrDefault(account, 0L);
+
+        if (stored <= 0 || overflow + stored < smallest) {
+            return overflow;
+        }
+
+        return planner.deposit(overflow + stored) - stored;
+    }
+
+    /**
+     * Apply the changes of virtual balances in a single storage batch. Either all changes are applied or none.
+     *
+     * @param dao     storage of the virtual balances
+     * @param virtual change of the virtual balance of each account
+     * @param stored  receives the new virtual balance of each changed account
+     * @return the account whose virtual balance could not be changed, in which case nothing was changed, or null if
+     * all changes were applied
+     * @throws GringottsStorageException when the batch failed, in which case nothing was changed
+     */
+    static GringottsAccount commitVirtual(DAO dao,
+                                          Map<GringottsAccount, Long> virtual,
+                                          Map<GringottsAccount, Long> stored) {
+        List<Map.Entry<GringottsAccount, Long>> changes = new ArrayList<>(virtual.entrySet());
+        Map<GringottsAccount, Long> changed = new HashMap<>();
+
+        // withdrawals go first, so an account that can't pay is found before anything is deposited
+        changes.sort(Map.Entry.comparingByValue());
+
+        try {
+            dao.batch(() -> {
+                for (Map.Entry<GringottsAccount, Long> change : changes) {
+                    if (change.getValue() == 0) {
+                        continue;
+                    }
+
+                    long cents = dao.addCents(change.getKey(), change.getValue());
+
+                    if (cents < 0) {
+                        // rolls back the changes made so far
+                        throw new Refused(change.getKey());
+                    }
+
+                    changed.put(change.getKey(), cents);
+                }
+            });
+        } catch (RuntimeException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof Refused) {
+                    return ((Refused) cause).account;
+                }
+            }
+
+            throw e;
+        }
+
+        stored.putAll(changed);
+
+        return null;
+    }
+
+    /**
+     * Update the ranks of accounts after their virtual balances were changed.
+     */
+    private static void rankVirtual(Map<GringottsAccount, Long> stored) {
+        BalanceLeaderboard leaderboard = Gringotts.getInstance().getAccounting().getLeaderboard();
+
+        for (Map.Entry<GringottsAccount, Long> cents : stored.entrySet()) {
+            leaderboard.updateVirtual(cents.getKey().owner, cents.getValue());
+        }
+    }
+
+    /**
+     * Thrown within a batch when a virtual balance could not be changed, to roll back the batch.
+     */
+    private static final class Refused extends RuntimeException {
+        private final transient GringottsAccount account;
+
+        Refused(GringottsAccount account) {
+            super(null, null, false, false);
+
+            this.account = account;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.gestern.gringotts;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.Sign;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.gestern.gringotts.accountholder.AccountHolder;
+import org.gestern.gringotts.data.ChestIndex;
+import org.gestern.gringotts.data.DAO;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes orphaned vaults from storage in the background.
+ * <p>
+ * Reading balances only skips vaults that are no longer valid and reports them here. A repeating task checks the
+ * reported vaults, and every so often all stored vaults, chunk by chunk, spending at most a fixed amount of time each
+ * tick. Vaults in chunks that are not loaded are not checked, so the sweeper never loads chunks. Orphans are deleted
+ * from storage in batches, and their signs are broken.
+ */
+public class VaultSweeper {
+
+    /**
+     * Number of orphans to collect before deleting them from storage.
+     */
+    private static final int BATCH_SIZE = 50;
+
+    private final Queue<ChestIndex.Entry> reported = new ConcurrentLinkedQueue<>();
+    private final Deque<ChestIndex.Entry> pending = new ArrayDeque<>();
+    private final List<ChestIndex.Entry> orphans = new ArrayList<>();
+    private final long budgetNanos;
+    private final long intervalTicks;
+    private final BukkitTask task;
+    private long idleTicks = 0;
+
+    /**
+     * Start sweeping vaults every tick.
+     *
+     * @param plugin        plugin owning the sweep task
+     * @param budgetMillis  milliseconds of main thread time to spend per tick. At least one vault is checked every
+     *                      tick while there is work.
+     * @param intervalTicks ticks to wait after a sweep of all vaults before starting the next one
+     */
+    public VaultSweeper(Plugin plugin, long budgetMillis, long intervalTicks) {
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.intervalTicks = intervalTicks;
+        this.task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+    }
+
+    private static DAO dao() {
+        return Gringotts.getInstance().getDao();
+    }
+
+    /**
+     * Report a vault that was found to be invalid, so it is checked and removed soon.
+     * May be called from any thread.
+     *
+     * @param chest the invalid vault
+     */
+    public void report(AccountChest chest) {
+        AccountHolder owner = chest.account.owner;
+
+        reported.add(new ChestIndex.Entry(
+                chest.sign.getWorld().getName(),
+                chest.sign.getX(),
+                chest.sign.getY(),
+                chest.sign.getZ(),
+                owner.getType(),
+                owner.getId()
+        ));
+    }
+
+    /**
+     * Check vaults until there are none left or the time budget of this tick is used up.
+     */
+    private void tick() {
+        long deadline = System.nanoTime() + budgetNanos;
+        ChestIndex.Entry next;
+
+        // reported vaults go first, they are likely orphans
+        while ((next = reported.poll()) != null) {
+            pending.addFirst(next);
+        }
+
+        if (pending.isEmpty()) {
+            if (++idleTicks < intervalTicks) {
+                return;
+            }
+
+            idleTicks = 0;
+            pending.addAll(dao().retrieveChestLocations());
+        }
+
+        while ((next = pending.poll()) != null) {
+            if (isOrphan(next) && !orphans.contains(next)) {
+                orphans.add(next);
+            }
+
+            if (System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+
+        if (orphans.size() >= BATCH_SIZE || (pending.isEmpty() && !orphans.isEmpty())) {
+            deleteOrphans();
+        }
+    }
+
+    /**
+     * Check whether a stored vault is orphaned. Vaults in unknown worlds or unloaded chunks are not orphans, and
+     * neither are vaults whose owner can't be resolved: the provider of their account type may not be loaded yet, or
+     * may not know the owner under the stored id.
+     *
+     * @param entry stored vault
+     * @return true if the vault's chunk is loaded and it is no longer a valid vault
+     */
+    private static boolean isOrphan(ChestIndex.Entry entry) {
+        World world = Bukkit.getWorld(entry.world);
+
+        if (world == null || !world.isChunkLoaded(entry.x >> 4, entry.z >> 4)) {
+            return false;
+        }
+
+        Optional<Sign> sign = Util.getBlockStateAs(world.getBlockAt(entry.x, entry.y, entry.z), Sign.class);
+
+        if (!sign.isPresent()) {
+            return true;
+        }
+
+        AccountHolder owner = Gringotts.getInstance().getAccountHolderFactory().get(entry.type, entry.owner);
+
+        return owner != null && new AccountChest(sign.get(), new GringottsAccount(owner)).notValid();
+    }
+
+    /**
+     * Delete the collected orphans from storage in one batch and break their signs.
+     */
+    private void deleteOrphans() {
+        List<ChestIndex.Entry> batch = new ArrayList<>(orphans);
+
+        orphans.clear();
+
+        // the world may have changed since the orphans were found
+        batch.removeIf(entry -> !isOrphan(entry));
+
+        dao().batch(() -> {
+            for (ChestIndex.Entry entry : batch) {
+                dao().deleteAccountChest(entry.world, entry.x, entry.y, entry.z);
+            }
+        });
+
+        for (ChestIndex.Entry entry : batch) {
+            Block block = Bukkit.getWorld(entry.world).getBlockAt(entry.x, entry.y, entry.z);
+
+            // forget the value of the orphan's container, it is no longer a vault
+            Gringotts.getInstance().getAccounting().getChestBalances().invalidateNear(block.getLocation());
+
+            AccountHolder owner = Gringotts.getInstance().getAccountHolderFactory().get(entry.type, entry.owner);
+
+            Gringotts.getInstance().getLogger().info(String.format(
+                    "Destroying orphaned vault of %s:%s at %s %d,%d,%d",
+                    entry.type,
+                    entry.owner,
+                    entry.world,
+                    entry.x,
+                    entry.y,
+                    entry.z
+            ));
+
+            if (owner != null) {
+                Gringotts.getInstance().getAccounting().invalidateChests(owner);
+            }
+
+            if (Util.isSignBlock(block)) {
+                block.breakNaturally();
+            }
+        }
+    }
+
+    /**
+     * Stop the sweep task. Orphans found but not deleted yet are checked again on the next start.
+     */
+    public void shutdown() {
+        task.cancel();
+    }
+}
@@ -0,0 +1,284 @@
+package org.gestern.gringotts;
+
+import org.bukkit.Material;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.gestern.gringotts.currency.Denomination;
+import org.gestern.gringotts.currency.GringottsCurrency;
+import org.gestern.gringotts.data.ChestIndex;
+import org.gestern.gringotts.data.VaultSnapshots;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.gestern.gringotts.Configuration.CONF;
+
+/**
+ * Plans a withdrawal over all inventories of an account before touching any of them.
+ * Deposits can be planned on the same snapshot.
+ * <p>
+ * The contents of every inventory are read once. Removal and change are computed on these copies, and only the
+ * inventories that actually changed are written back, each with a single call. Must be used on the main thread,
+ * within a single tick.
+ */
+public class WithdrawalPlanner {
+
+    private final GringottsCurrency currency;
+    private final ChestBalanceCache chestBalances;
+    private final VaultSnapshots snapshots;
+    private final List<Inventory> inventories;
+    private final Map<Inventory, ChestIndex.Entry> vaults;
+    private final ItemStack[][] contents;
+    private final Denomination[][] slotDenominations;
+    private final boolean[] changed;
+    private final long[] values;
+    private final long[] deltas;
+    private final long balance;
+
+    /**
+     * Take a snapshot of the given inventories.
+     *
+     * @param inventories inventories to withdraw from, in order of preference
+     * @param vaults      location of the sign of each inventory that is a vault container, to update its snapshot
+     */
+    public WithdrawalPlanner(List<Inventory> inventories, Map<Inventory, ChestIndex.Entry> vaults) {
+        this(
+                inventories,
+                vaults,
+                CONF.getCurrency(),
+                Gringotts.getInstance().getAccounting().getChestBalances(),
+                Gringotts.getInstance().getVaultSnapshots()
+        );
+    }
+
+    /**
+     * Take a snapshot of the given inventories, counting items of the given currency.
+     * Only the storage slots are used, the same ones that {@link AccountInventory#balance()} counts.
+     *
+     * @param inventories   inventories to withdraw from, in order of preference
+     * @param vaults        location of the sign of each inventory that is a vault container, to update its snapshot
+     * @param currency      currency of the items
+     * @param chestBalances cached values of containers, updated on commit
+     * @param snapshots     last known values of vaults, updated on commit
+     */
+    WithdrawalPlanner(List<Inventory> inventories,
+                      Map<Inventory, ChestIndex.Entry> vaults,
+                      GringottsCurrency currency,
+                      ChestBalanceCache chestBalances,
+                      VaultSnapshots snapshots) {
+        long total = 0;
+
+        this.currency = currency;
+        this.chestBalances = chestBalances;
+        this.snapshots = snapshots;
+        this.inventories = inventories;
+        this.vaults = vaults;
+        this.contents = new ItemStack[inventories.size()][];
+        this.slotDenominations = new Denomination[inventories.size()][];
+        this.changed = new boolean[inventories.size()];
+        this.values = new long[inventories.size()];
+        this.deltas = new long[inventories.size()];
+
+        for (int i = 0; i < contents.length; i++) {
+            ItemStack[] items = inventories.get(i).getStorageContents();
+            Denomination[] denominations = new Denomination[items.length];
+
+            for (int slot = 0; slot < items.length; slot++) {
+                Denomination denomination = currency.getDenomination(items[slot]);
+
+                if (denomination != null) {
+                    denominations[slot] = denomination;
+                    values[i] += denomination.getValue() * items[slot].getAmount();
+                }
+            }
+
+            total += values[i];
+
+            contents[i] = items;
+            slotDenominations[i] = denominations;
+        }
+
+        this.balance = total;
+    }
+
+    /**
+     * Total value of all currency items in the snapshot.
+     *
+     * @return value of the inventories in cents
+     */
+    public long balance() {
+        return balance;
+    }
+
+    /**
+     * Plan the removal of an amount from the snapshot.
+     * Denominations are taken from smallest to largest. If that takes too much, the difference is paid back as
+     * change into the same inventories.
+     *
+     * @param amount amount in cents to remove
+     * @return amount that could not be handled with items: positive if it still has to be taken from the account,
+     * negative if change could not be paid back in items
+     */
+    public long plan(long amount) {
+        List<Denomination> denominations = currency.getDenominations();
+        long remaining = amount;
+
+        for (int d = denominations.size() - 1; d >= 0 && remaining > 0; d--) {
+            Denomination denomination = denominations.get(d);
+            long value = denomination.getValue();
+
+            // take 1 more than necessary if it doesn't round. pay back the extra later
+            long needed = (remaining + value - 1) / value;
+
+            for (int i = 0; i < contents.length && needed > 0; i++) {
+                for (int slot = 0; slot < contents[i].length && needed > 0; slot++) {
+                    if (slotDenominations[i][slot] != denomination) {
+                        continue;
+                    }
+
+                    ItemStack stack = contents[i][slot];
+                    int taken = (int) Math.min(needed, stack.getAmount());
+
+                    if (taken == stack.getAmount()) {
+                        contents[i][slot] = null;
+                        slotDenominations[i][slot] = null;
+                    } else {
+                        ItemStack rest = stack.clone();
+
+                        rest.setAmount(stack.getAmount() - taken);
+                        contents[i][slot] = rest;
+                    }
+
+                    changed[i] = true;
+                    deltas[i] -= taken * value;
+                    needed -= taken;
+                    remaining -= taken * value;
+                }
+            }
+        }
+
+        if (remaining < 0) {
+            long change = -remaining;
+
+            return -(change - placeChange(change));
+        }
+
+        return remaining;
+    }
+
+    /**
+     * Plan putting an amount into the snapshot.
+     *
+     * @param amount amount in cents to put
+     * @return amount that did not fit into the inventories
+     */
+    public long deposit(long amount) {
+        return amount - placeChange(amount);
+    }
+
+    /**
+     * Put an amount into the snapshot, largest denominations first, filling existing stacks before empty slots.
+     *
+     * @param value amount in cents to put
+     * @return amount actually put
+     */
+    private long placeChange(long value) {
+        long remaining = value;
+
+        for (Denomination denomination : currency.getDenominations()) {
+            long count = remaining / denomination.getValue();
+
+            if (count == 0) {
+                continue;
+            }
+
+            long placed = count - fill(denomination, count, false);
+
+            placed += (count - placed) - fill(denomination, count - placed, true);
+            remaining -= placed * denomination.getValue();
+        }
+
+        return value - remaining;
+    }
+
+    /**
+     * Put items of a denomination into the snapshot.
+     *
+     * @param denomination denomination to put
+     * @param count        number of items to put
+     * @param emptySlots   whether to use empty slots, or top up existing stacks of the denomination
+     * @return number of items that did not fit
+     */
+    private long fill(Denomination denomination, long count, boolean emptySlots) {
+        ItemStack type = denomination.getKey().type;
+
+        for (int i = 0; i < contents.length && count > 0; i++) {
+            int maxStackSize = Math.min(type.getMaxStackSize(), inventories.get(i).getMaxStackSize());
+
+            for (int slot = 0; slot < contents[i].length && count > 0; slot++) {
+                ItemStack stack = contents[i][slot];
+                int current;
+
+                if (emptySlots && (stack == null || stack.getType() == Material.AIR)) {
+                    current = 0;
+                } else if (!emptySlots && slotDenominations[i][slot] == denomination) {
+                    current = stack.getAmount();
+                } else {
+                    continue;
+                }
+
+                int put = (int) Math.min(count, maxStackSize - current);
+
+                if (put <= 0) {
+                    continue;
+                }
+
+                ItemStack filled = current > 0 ? stack.clone() : new ItemStack(type);
+
+                filled.setAmount(current + put);
+                contents[i][slot] = filled;
+                slotDenominations[i][slot] = denomination;
+                changed[i] = true;
+                deltas[i] += put * denomination.getValue();
+                count -= put;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Write the planned contents back to every inventory that changed, and update their cached values and the
+     * snapshots of vault containers.
+     *
+     * @return change of the value of the inventories counted as vaults, that is all but player inventories, in cents
+     */
+    public long commit() {
+        long vaultDelta = 0;
+
+        for (int i = 0; i < contents.length; i++) {
+            if (changed[i]) {
+                Inventory inventory = inventories.get(i);
+                ChestIndex.Entry vault = vaults.get(inventory);
+
+                inventory.setStorageContents(contents[i]);
+                chestBalances.adjust(inventory, deltas[i]);
+                values[i] += deltas[i];
+
+                if (vault != null) {
+                    snapshots.record(vault.world, vault.x, vault.y, vault.z, values[i]);
+                }
+
+                if (inventory.getType() != InventoryType.PLAYER) {
+                    vaultDelta += deltas[i];
+                }
+
+                changed[i] = false;
+                deltas[i] = 0;
+            }
+        }
+
+        return vaultDelta;
+    }
+}
@@ -6,8 +6,6 @@ import org.gestern.gringotts.event.VaultCreationEvent;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Manages creating various types of AccountHolder centrally.
@@ -17,13 +15,15 @@ import java.util.stream.Stream;
 public class AccountHolderFactory implements Iterable<AccountHolderProvider> {
 
     private final Map<String, AccountHolderProvider> accountHolderProviders = new LinkedHashMap<>();
+    private final PlayerNameIndex playerNames = new PlayerNameIndex();
+    private final PlayerResolver playerResolver = new PlayerResolver(playerNames);
 
     /**
      * Instantiates a new Account holder factory.
      */
     public AccountHolderFactory() {
         // linked HashMap maintains iteration order -> prefer player to be checked first
-        accountHolderProviders.put("player", new PlayerAccountHolderProvider());
+        accountHolderProviders.put("player", new PlayerAccountHolderProvider(playerNames));
 
         // TODO support banks
         // TODO support virtual accounts
@@ -131,6 +131,24 @@ public class AccountHolderFactory implements Iterable<AccountHolderProvider> {
         return Optional.ofNullable(this.accountHolderProviders.getOrDefault(type, null));
     }
 
+    /**
+     * Index of the names of all players known to the server.
+     *
+     * @return the player name index
+     */
+    public PlayerNameIndex getPlayerNames() {
+        return playerNames;
+    }
+
+    /**
+     * Resolver for player names and ids given to commands and API calls.
+     *
+     * @return the player resolver
+     */
+    public PlayerResolver getPlayerResolver() {
+        return playerResolver;
+    }
+
     /**
      * Returns an iterator over elements of type {@code T}.
      *
@@ -144,20 +162,21 @@ public class AccountHolderFactory implements Iterable<AccountHolderProvider> {
 
     private static class PlayerAccountHolderProvider implements AccountHolderProvider {
 
+        private final PlayerNameIndex playerNames;
+
+        PlayerAccountHolderProvider(PlayerNameIndex playerNames) {
+            this.playerNames = playerNames;
+        }
+
         @Override
         public AccountHolder getAccountHolder(@NotNull String uuidOrName) {
             try {
                 return getAccountHolder(UUID.fromString(uuidOrName));
             } catch (IllegalArgumentException ignored) {
                 // don't use getOfflinePlayer(String) because that will do a blocking web request
-                // rather iterate this array, should be quick enough
-                for (OfflinePlayer p : Bukkit.getOfflinePlayers()) {
-                    if (uuidOrName.equals(p.getName())) {
-                        return getAccountHolder(p);
-                    }
-                }
+                UUID uuid = playerNames.get(uuidOrName);
 
-                return null;
+                return uuid != null ? getAccountHolder(uuid) : null;
             }
         }
 
@@ -200,9 +219,7 @@ public class AccountHolderFactory implements Iterable<AccountHolderProvider> {
          */
         @Override
         public Set<String> getAccountNames() {
-            return Stream.of(Bukkit.getOfflinePlayers())
-                    .map(OfflinePlayer::getName)
-                    .collect(Collectors.toSet());
+            return playerNames.names();
         }
     }
 
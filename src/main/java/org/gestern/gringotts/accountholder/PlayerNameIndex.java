@@ -0,0 +1,90 @@
+package org.gestern.gringotts.accountholder;
+
+import org.bukkit.OfflinePlayer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Case-insensitive index of the names of all players known to the server.
+ * <p>
+ * Looking up a player by name through the offline player list means copying and scanning the whole list, which
+ * gets expensive on servers with many players. This index is filled once on startup and kept current when players
+ * join, so names can be resolved and completed without touching the list again.
+ */
+public class PlayerNameIndex {
+
+    private final NavigableMap<String, UUID> uuidsByName = new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<UUID, String> namesByUuid = new ConcurrentHashMap<>();
+
+    /**
+     * Add players to the index.
+     *
+     * @param players players to add
+     */
+    public void addAll(OfflinePlayer[] players) {
+        for (OfflinePlayer player : players) {
+            add(player);
+        }
+    }
+
+    /**
+     * Add a player to the index, replacing a previous name of the same player.
+     *
+     * @param player player to add
+     */
+    public void add(OfflinePlayer player) {
+        String name = player.getName();
+
+        if (name == null) {
+            return;
+        }
+
+        UUID uuid = player.getUniqueId();
+        String previous = namesByUuid.put(uuid, name);
+
+        if (previous != null) {
+            uuidsByName.remove(previous, uuid);
+        }
+
+        // remove first, so a change in case of the name is picked up
+        uuidsByName.remove(name);
+        uuidsByName.put(name, uuid);
+    }
+
+    /**
+     * Get the id of the player with the given name, ignoring case.
+     *
+     * @param name name of a player
+     * @return id of the player, or null if no player with this name is known
+     */
+    public UUID get(String name) {
+        return uuidsByName.get(name);
+    }
+
+    /**
+     * Names of all known players.
+     *
+     * @return unmodifiable view of the player names
+     */
+    public Set<String> names() {
+        return Collections.unmodifiableSet(uuidsByName.keySet());
+    }
+
+    /**
+     * Names of known players starting with the given prefix, ignoring case.
+     *
+     * @param prefix beginning of the names
+     * @return matching names in alphabetical order
+     */
+    public List<String> startingWith(String prefix) {
+        return new ArrayList<>(uuidsByName.subMap(prefix, true, prefix + Character.MAX_VALUE, true).keySet());
+    }
+}
@@ -0,0 +1,99 @@
+package org.gestern.gringotts.accountholder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves player names and ids given to commands and API calls to players that have played on this server.
+ * <p>
+ * Online players are looked up directly. Everything else is resolved through the player name index or by id, and
+ * the outcome, including failure, is remembered for a while. This never asks Mojang for a profile, and repeated
+ * lookups of the same identifier don't touch player data on disk again.
+ */
+public class PlayerResolver {
+
+    private static final int MAXIMUM_SIZE = 10000;
+    private static final long EXPIRE_MINUTES = 5;
+
+    private final PlayerNameIndex playerNames;
+    private final Cache<String, Optional<UUID>> resolved = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterWrite(EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Create a resolver looking up names in the given index.
+     *
+     * @param playerNames index of known player names
+     */
+    public PlayerResolver(PlayerNameIndex playerNames) {
+        this.playerNames = playerNames;
+    }
+
+    private static String key(String nameOrId) {
+        return nameOrId.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Find the player with the given name or id.
+     *
+     * @param nameOrId name of an online or known player, or the id of a player as string
+     * @return the player, or null if no player by this name or id has played on this server
+     */
+    public OfflinePlayer resolve(String nameOrId) {
+        Player online = Bukkit.getPlayer(nameOrId);
+
+        if (online != null) {
+            return online;
+        }
+
+        Optional<UUID> uuid;
+
+        try {
+            uuid = resolved.get(key(nameOrId), () -> Optional.ofNullable(lookup(nameOrId)));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not resolve player " + nameOrId, e.getCause());
+        }
+
+        return uuid.map(Bukkit::getOfflinePlayer).orElse(null);
+    }
+
+    private UUID lookup(String nameOrId) {
+        UUID uuid = playerNames.get(nameOrId);
+
+        if (uuid != null) {
+            return uuid;
+        }
+
+        try {
+            uuid = UUID.fromString(nameOrId);
+        } catch (IllegalArgumentException ignored) {
+            return null;
+        }
+
+        return Bukkit.getOfflinePlayer(uuid).hasPlayedBefore() ? uuid : null;
+    }
+
+    /**
+     * Forget what is known about a player, for example because they just joined for the first time or with a new
+     * name.
+     *
+     * @param player player to forget
+     */
+    public void invalidate(OfflinePlayer player) {
+        resolved.invalidate(key(player.getUniqueId().toString()));
+
+        if (player.getName() != null) {
+            resolved.invalidate(key(player.getName()));
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.gestern.gringotts.api;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Defines actions possible on an account in an economy.
  */
@@ -50,6 +52,15 @@ public interface Account {
      */
     double invBalance();
 
+    /**
+     * Return how out of date the balance of this account may be. Economy plugins may count money held in places that
+     * are not currently loaded from the last known amount, instead of loading them.
+     *
+     * @return age in milliseconds of the oldest last known amount included in the balance, or 0 if the balance is
+     * current
+     */
+    long balanceAge();
+
     /**
      * Return whether this account has at least the specified amount.
      *
@@ -104,6 +115,40 @@ public interface Account {
      */
     Transaction send(double value);
 
+    /**
+     * Return the balance of this account, without blocking the calling thread.
+     *
+     * @return completed with the balance of this account.
+     */
+    CompletableFuture<Double> balanceAsync();
+
+    /**
+     * Add an amount to this account's balance, without blocking the calling thread.
+     *
+     * @param value the amount to be added.
+     * @return completed with the result of adding (success or failure type)
+     */
+    CompletableFuture<TransactionResult> addAsync(double value);
+
+    /**
+     * Remove an amount from this account's balance, without blocking the calling thread.
+     *
+     * @param value the amount to be removed
+     * @return completed with the result of removing (success or failure type)
+     */
+    CompletableFuture<TransactionResult> removeAsync(double value);
+
+    /**
+     * Send an amount to another account, without blocking the calling thread.
+     * If the transfer fails, both sender and recipient will have unchanged account balance.
+     * To apply taxes, use {@link Transaction#toAsync(Account)} on the result of send(value).withTaxes().
+     *
+     * @param value the amount to be transferred
+     * @param to    the account receiving the amount
+     * @return completed with the result of the transaction.
+     */
+    CompletableFuture<TransactionResult> sendAsync(double value, Account to);
+
     /**
      * Return the type of this account. Default account types are "player" and "bank".
      * The economy plugin specifies any other types.
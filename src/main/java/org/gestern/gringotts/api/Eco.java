@@ -1,7 +1,10 @@
 package org.gestern.gringotts.api;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The interface Eco.
@@ -96,4 +99,53 @@ public interface Eco {
      * @return the account
      */
     Account getAccount(String id);
+
+    /**
+     * Get the virtual balances of all accounts of a type at once. This is much cheaper than querying each account,
+     * but does not include money held in vaults or inventories.
+     *
+     * @param type type of accounts, for example "player"
+     * @return virtual balance of each account, by account id
+     */
+    Map<String, Double> virtualBalances(String type);
+
+    /**
+     * Get the virtual balances of several accounts of a type at once. This is much cheaper than querying each
+     * account, but does not include money held in vaults or inventories. Accounts that don't exist are missing from
+     * the result.
+     *
+     * @param type type of accounts, for example "player"
+     * @param ids  account ids
+     * @return virtual balance of each account, by account id in lower case
+     */
+    Map<String, Double> virtualBalances(String type, Collection<String> ids);
+
+    /**
+     * Get the accounts with the highest balances, for leaderboards. Balances are ranked as they were last seen, so
+     * money in vaults that were not used for a while may be missing, but this is cheap however many accounts exist.
+     *
+     * @param offset number of top accounts to skip
+     * @param limit  maximum number of accounts to return
+     * @return last known balance of each account, in descending order
+     */
+    Map<Account, Double> topBalances(int offset, int limit);
+
+    /**
+     * Add amounts to several accounts at once. This is much cheaper than adding to each account separately:
+     * inventories are filled in a single tick, and balances are stored in a single database transaction. If storing
+     * fails, no account is paid and all of them report an error. Waits for the main thread without a timeout.
+     *
+     * @param payouts amount to add to each account
+     * @return result for each account
+     */
+    Map<Account, TransactionResult> payout(Map<Account, Double> payouts);
+
+    /**
+     * Add amounts to several accounts at once, without blocking the calling thread.
+     *
+     * @param payouts amount to add to each account
+     * @return completed with the result for each account
+     * @see #payout(Map)
+     */
+    CompletableFuture<Map<Account, TransactionResult>> payoutAsync(Map<Account, Double> payouts);
 }
@@ -1,5 +1,7 @@
 package org.gestern.gringotts.api;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface Transaction {
 
     /**
@@ -10,6 +12,15 @@ public interface Transaction {
      */
     TransactionResult to(Account to);
 
+    /**
+     * Complete the transaction by sending the transaction amount to a given account, without blocking the calling
+     * thread.
+     *
+     * @param to Account to which receives the value of this transaction.
+     * @return completed with the result of the transaction.
+     */
+    CompletableFuture<TransactionResult> toAsync(Account to);
+
     /**
      * Apply taxes to this transaction, as configured by the economy plugin.
      * Completing the transaction will fail if the taxes cannot be collected.
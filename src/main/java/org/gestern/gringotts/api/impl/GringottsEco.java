@@ -4,6 +4,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.gestern.gringotts.AccountInventory;
+import org.gestern.gringotts.BalanceLeaderboard;
 import org.gestern.gringotts.Gringotts;
 import org.gestern.gringotts.GringottsAccount;
 import org.gestern.gringotts.accountholder.AccountHolder;
@@ -13,9 +14,14 @@ import org.gestern.gringotts.api.*;
 import org.gestern.gringotts.currency.GringottsCurrency;
 import org.gestern.gringotts.data.DAO;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.gestern.gringotts.Configuration.CONF;
 import static org.gestern.gringotts.api.TransactionResult.ERROR;
@@ -151,6 +157,86 @@ public class GringottsEco implements Eco {
         return Collections.emptySet();
     }
 
+    @Override
+    public Map<String, Double> virtualBalances(String type) {
+        return toDisplayValues(dao.retrieveCents(type));
+    }
+
+    @Override
+    public Map<String, Double> virtualBalances(String type, Collection<String> ids) {
+        return toDisplayValues(dao.retrieveCents(type, ids));
+    }
+
+    @Override
+    public Map<Account, Double> topBalances(int offset, int limit) {
+        BalanceLeaderboard leaderboard = Gringotts.getInstance().getAccounting().getLeaderboard();
+        Map<Account, Double> balances = new LinkedHashMap<>();
+
+        for (BalanceLeaderboard.Entry entry : leaderboard.top(offset, limit)) {
+            balances.put(custom(entry.type, entry.id), CONF.getCurrency().getDisplayValue(entry.getBalance()));
+        }
+
+        return balances;
+    }
+
+    @Override
+    public Map<Account, TransactionResult> payout(Map<Account, Double> payouts) {
+        Map<GringottsAccount, Long> cents = new LinkedHashMap<>();
+        Map<Account, TransactionResult> results = new LinkedHashMap<>();
+
+        toCents(payouts, cents, results);
+
+        return fromAccounts(payouts, Gringotts.getInstance().getAccounting().getTransfers().payout(cents), results);
+    }
+
+    @Override
+    public CompletableFuture<Map<Account, TransactionResult>> payoutAsync(Map<Account, Double> payouts) {
+        Map<GringottsAccount, Long> cents = new LinkedHashMap<>();
+        Map<Account, TransactionResult> results = new LinkedHashMap<>();
+
+        toCents(payouts, cents, results);
+
+        return Gringotts.getInstance().getAccounting().getTransfers().payoutAsync(cents)
+                .thenApply(paid -> fromAccounts(payouts, paid, results));
+    }
+
+    /**
+     * Convert payouts to cents for the transfer engine. Accounts that don't exist fail right away.
+     */
+    private static void toCents(Map<Account, Double> payouts,
+                                Map<GringottsAccount, Long> cents,
+                                Map<Account, TransactionResult> results) {
+        for (Map.Entry<Account, Double> payout : payouts.entrySet()) {
+            GringottsAccount account = gringottsAccount(payout.getKey());
+
+            if (account == null) {
+                results.put(payout.getKey(), ERROR);
+            } else {
+                cents.merge(account, CONF.getCurrency().getCentValue(payout.getValue()), Long::sum);
+            }
+        }
+    }
+
+    private static Map<Account, TransactionResult> fromAccounts(Map<Account, Double> payouts,
+                                                                Map<GringottsAccount, TransactionResult> paid,
+                                                                Map<Account, TransactionResult> results) {
+        for (Account account : payouts.keySet()) {
+            results.putIfAbsent(account, paid.get(gringottsAccount(account)));
+        }
+
+        return results;
+    }
+
+    private static Map<String, Double> toDisplayValues(Map<String, Long> cents) {
+        Map<String, Double> balances = new HashMap<>(cents.size() * 4 / 3 + 1);
+
+        for (Map.Entry<String, Long> entry : cents.entrySet()) {
+            balances.put(entry.getKey(), CONF.getCurrency().getDisplayValue(entry.getValue()));
+        }
+
+        return balances;
+    }
+
     /**
      * Gets account.
      *
@@ -162,24 +248,10 @@ public class GringottsEco implements Eco {
         String[] parts = id.split(":");
 
         if (parts.length == 1) {
-            OfflinePlayer player = Bukkit.getPlayer(id);
-
-            if (player == null) {
-                //noinspection deprecation
-                if (Bukkit.getOfflinePlayer(id).hasPlayedBefore()) {
-                    //noinspection deprecation
-                    player = Bukkit.getOfflinePlayer(id);
-                } else {
-                    try {
-                        UUID targetUuid = UUID.fromString(id);
-
-                        if (Bukkit.getOfflinePlayer(targetUuid).hasPlayedBefore()) {
-                            player = Bukkit.getOfflinePlayer(targetUuid);
-                        }
-                    } catch (IllegalArgumentException ignored) {
-                    }
-                }
-            }
+            OfflinePlayer player = Gringotts.getInstance()
+                    .getAccountHolderFactory()
+                    .getPlayerResolver()
+                    .resolve(id);
 
             if (player != null) {
                 return player(player.getUniqueId());
@@ -191,6 +263,16 @@ public class GringottsEco implements Eco {
         return custom(parts[0], parts[1]);
     }
 
+    /**
+     * The Gringotts account behind an account of this economy.
+     *
+     * @param account an account
+     * @return the Gringotts account, or null if the account doesn't exist
+     */
+    static GringottsAccount gringottsAccount(Account account) {
+        return account instanceof ValidAccount ? ((ValidAccount) account).acc : null;
+    }
+
     private static class InvalidAccount implements BankAccount, PlayerAccount {
 
         private final String type;
@@ -268,6 +350,16 @@ public class GringottsEco implements Eco {
             return 0;
         }
 
+        /**
+         * Balance age long.
+         *
+         * @return the long
+         */
+        @Override
+        public long balanceAge() {
+            return 0;
+        }
+
         /**
          * Has boolean.
          *
@@ -323,6 +415,50 @@ public class GringottsEco implements Eco {
             return new GringottsTransaction(this, value);
         }
 
+        /**
+         * Balance async.
+         *
+         * @return the completable future
+         */
+        @Override
+        public CompletableFuture<Double> balanceAsync() {
+            return CompletableFuture.completedFuture(balance());
+        }
+
+        /**
+         * Add async.
+         *
+         * @param value the value
+         * @return the completable future
+         */
+        @Override
+        public CompletableFuture<TransactionResult> addAsync(double value) {
+            return CompletableFuture.completedFuture(ERROR);
+        }
+
+        /**
+         * Remove async.
+         *
+         * @param value the value
+         * @return the completable future
+         */
+        @Override
+        public CompletableFuture<TransactionResult> removeAsync(double value) {
+            return CompletableFuture.completedFuture(ERROR);
+        }
+
+        /**
+         * Send async.
+         *
+         * @param value the value
+         * @param to    the to
+         * @return the completable future
+         */
+        @Override
+        public CompletableFuture<TransactionResult> sendAsync(double value, Account to) {
+            return send(value).toAsync(to);
+        }
+
         /**
          * Type string.
          *
@@ -539,6 +675,7 @@ public class GringottsEco implements Eco {
         @Override
         public Account delete() {
             dao.deleteAccount(acc);
+            Gringotts.getInstance().getAccounting().forgetAccount(acc.owner);
             throw new RuntimeException("deleting accounts not supported by Gringotts");
         }
 
@@ -572,6 +709,16 @@ public class GringottsEco implements Eco {
             return CONF.getCurrency().getDisplayValue(acc.getInvBalance());
         }
 
+        /**
+         * Balance age long.
+         *
+         * @return the long
+         */
+        @Override
+        public long balanceAge() {
+            return acc.getBalanceAge();
+        }
+
         /**
          * Has boolean.
          *
@@ -635,6 +782,58 @@ public class GringottsEco implements Eco {
             return new GringottsTransaction(this, value);
         }
 
+        /**
+         * Balance async.
+         *
+         * @return the completable future
+         */
+        @Override
+        public CompletableFuture<Double> balanceAsync() {
+            return acc.getBalanceAsync().thenApply(CONF.getCurrency()::getDisplayValue);
+        }
+
+        /**
+         * Add async.
+         *
+         * @param value the value
+         * @return the completable future
+         */
+        @Override
+        public CompletableFuture<TransactionResult> addAsync(double value) {
+            if (value < 0) {
+                return removeAsync(-value);
+            }
+
+            return acc.addAsync(CONF.getCurrency().getCentValue(value));
+        }
+
+        /**
+         * Remove async.
+         *
+         * @param value the value
+         * @return the completable future
+         */
+        @Override
+        public CompletableFuture<TransactionResult> removeAsync(double value) {
+            if (value < 0) {
+                return addAsync(-value);
+            }
+
+            return acc.removeAsync(CONF.getCurrency().getCentValue(value));
+        }
+
+        /**
+         * Send async.
+         *
+         * @param value the value
+         * @param to    the to
+         * @return the completable future
+         */
+        @Override
+        public CompletableFuture<TransactionResult> sendAsync(double value, Account to) {
+            return send(value).toAsync(to);
+        }
+
         /**
          * Type string.
          *
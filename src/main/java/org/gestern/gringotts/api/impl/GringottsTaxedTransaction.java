@@ -1,9 +1,13 @@
 package org.gestern.gringotts.api.impl;
 
+import org.gestern.gringotts.GringottsAccount;
 import org.gestern.gringotts.api.Account;
 import org.gestern.gringotts.api.TaxedTransaction;
 import org.gestern.gringotts.api.TransactionResult;
 
+import java.util.concurrent.CompletableFuture;
+
+import static org.gestern.gringotts.Configuration.CONF;
 import static org.gestern.gringotts.api.TransactionResult.SUCCESS;
 
 /**
@@ -39,13 +43,32 @@ public class GringottsTaxedTransaction extends GringottsTransaction implements T
      */
     @Override
     public TransactionResult to(Account recipient) {
+        return journaled(recipient, taxes);
+    }
+
+    @Override
+    protected TransactionResult transfer(Account recipient) {
+        GringottsAccount source = GringottsEco.gringottsAccount(from);
+        GringottsAccount target = GringottsEco.gringottsAccount(recipient);
+        GringottsAccount taxCollector = collector != null ? GringottsEco.gringottsAccount(collector) : null;
+
+        if (source != null && target != null && (collector == null || taxCollector != null)) {
+            return transfers().transfer(
+                    source,
+                    target,
+                    CONF.getCurrency().getCentValue(value),
+                    CONF.getCurrency().getCentValue(taxes),
+                    taxCollector
+            );
+        }
+
         TransactionResult taxResult = from.remove(taxes);
 
         if (taxResult != SUCCESS) {
             return taxResult;
         }
 
-        TransactionResult result = super.to(recipient);
+        TransactionResult result = super.transfer(recipient);
 
         // undo taxing if transaction failed
         if (result != SUCCESS) {
@@ -59,6 +82,54 @@ public class GringottsTaxedTransaction extends GringottsTransaction implements T
         return result;
     }
 
+    /**
+     * Complete the transaction by sending the transaction amount to a given account, without blocking the calling
+     * thread.
+     *
+     * @param recipient Account to which receives the value of this transaction.
+     * @return completed with the result of the transaction.
+     */
+    @Override
+    public CompletableFuture<TransactionResult> toAsync(Account recipient) {
+        return journaledAsync(recipient, taxes);
+    }
+
+    @Override
+    protected CompletableFuture<TransactionResult> transferAsync(Account recipient) {
+        GringottsAccount source = GringottsEco.gringottsAccount(from);
+        GringottsAccount target = GringottsEco.gringottsAccount(recipient);
+        GringottsAccount taxCollector = collector != null ? GringottsEco.gringottsAccount(collector) : null;
+
+        if (source != null && target != null && (collector == null || taxCollector != null)) {
+            return transfers().transferAsync(
+                    source,
+                    target,
+                    CONF.getCurrency().getCentValue(value),
+                    CONF.getCurrency().getCentValue(taxes),
+                    taxCollector
+            );
+        }
+
+        return from.removeAsync(taxes).thenCompose(taxResult -> {
+            if (taxResult != SUCCESS) {
+                return CompletableFuture.completedFuture(taxResult);
+            }
+
+            return super.transferAsync(recipient).thenCompose(result -> {
+                // undo taxing if transaction failed
+                if (result != SUCCESS) {
+                    return from.addAsync(taxes).thenApply(undo -> result);
+                }
+
+                if (collector != null) {
+                    return collector.addAsync(taxes).thenApply(collected -> result);
+                }
+
+                return CompletableFuture.completedFuture(result);
+            });
+        });
+    }
+
     /**
      * Add a tax collector to this taxed transaction. The tax collector account receives the taxes from this
      * transaction.
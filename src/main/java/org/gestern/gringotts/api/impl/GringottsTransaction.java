@@ -1,9 +1,15 @@
 package org.gestern.gringotts.api.impl;
 
+import org.gestern.gringotts.Gringotts;
+import org.gestern.gringotts.GringottsAccount;
+import org.gestern.gringotts.TransferEngine;
 import org.gestern.gringotts.api.Account;
 import org.gestern.gringotts.api.TaxedTransaction;
 import org.gestern.gringotts.api.Transaction;
 import org.gestern.gringotts.api.TransactionResult;
+import org.gestern.gringotts.data.TransactionJournal;
+
+import java.util.concurrent.CompletableFuture;
 
 import static org.gestern.gringotts.Configuration.CONF;
 import static org.gestern.gringotts.api.TransactionResult.ERROR;
@@ -42,8 +48,114 @@ public class GringottsTransaction implements Transaction {
         this.value = value;
     }
 
+    /**
+     * Record the start of a transaction in the journal, if there is one.
+     *
+     * @param to  account receiving the money
+     * @param tax taxes paid by the sender
+     * @return the journaled transaction, or null if transactions are not journaled
+     */
+    protected TransactionJournal.Transfer begin(Account to, double tax) {
+        TransactionJournal journal = Gringotts.getInstance().getJournal();
+
+        if (journal == null) {
+            return null;
+        }
+
+        return journal.begin(
+                from.type() + ":" + from.id(),
+                to.type() + ":" + to.id(),
+                CONF.getCurrency().getCentValue(value),
+                CONF.getCurrency().getCentValue(tax)
+        );
+    }
+
+    /**
+     * Record the result of a transaction in the journal, if it was journaled.
+     *
+     * @param transfer the journaled transaction, or null
+     * @param result   result of the transaction
+     */
+    private static void end(TransactionJournal.Transfer transfer, TransactionResult result) {
+        if (transfer != null) {
+            Gringotts.getInstance().getJournal().end(transfer, result);
+        }
+    }
+
+    /**
+     * Move the money of this transaction and record it in the journal. The transaction is recorded as failed if
+     * moving the money throws.
+     *
+     * @param to  account receiving the money
+     * @param tax taxes paid by the sender
+     * @return result of the transaction
+     */
+    protected TransactionResult journaled(Account to, double tax) {
+        TransactionJournal.Transfer transfer = begin(to, tax);
+        TransactionResult result = ERROR;
+
+        try {
+            result = transfer(to);
+        } finally {
+            end(transfer, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Move the money of this transaction without blocking the calling thread, and record it in the journal. The
+     * transaction is recorded as failed if moving the money fails exceptionally.
+     *
+     * @param to  account receiving the money
+     * @param tax taxes paid by the sender
+     * @return completed with the result of the transaction
+     */
+    protected CompletableFuture<TransactionResult> journaledAsync(Account to, double tax) {
+        TransactionJournal.Transfer transfer = begin(to, tax);
+        CompletableFuture<TransactionResult> result;
+
+        try {
+            result = transferAsync(to);
+        } catch (RuntimeException e) {
+            end(transfer, ERROR);
+
+            throw e;
+        }
+
+        return result.whenComplete((done, e) -> end(transfer, e == null ? done : ERROR));
+    }
+
     @Override
     public TransactionResult to(Account to) {
+        return journaled(to, 0);
+    }
+
+    /**
+     * Engine moving money between Gringotts accounts.
+     *
+     * @return the transfer engine
+     */
+    protected static TransferEngine transfers() {
+        return Gringotts.getInstance().getAccounting().getTransfers();
+    }
+
+    /**
+     * Move the money of this transaction, without journaling.
+     * Transfers between Gringotts accounts are done by the transfer engine in one step, other accounts are
+     * handled by removing, adding and refunding.
+     *
+     * @param to account receiving the money
+     * @return result of the transaction
+     */
+    protected TransactionResult transfer(Account to) {
+        GringottsAccount source = GringottsEco.gringottsAccount(from);
+        GringottsAccount target = GringottsEco.gringottsAccount(to);
+
+        if (source != null && target != null) {
+            return transfers().transfer(source, target, CONF.getCurrency().getCentValue(value), 0, null);
+        }
+
         if (value < 0) {
             return ERROR;
         }
@@ -66,6 +178,46 @@ public class GringottsTransaction implements Transaction {
         return removed;
     }
 
+    @Override
+    public CompletableFuture<TransactionResult> toAsync(Account to) {
+        return journaledAsync(to, 0);
+    }
+
+    /**
+     * Move the money of this transaction without blocking the calling thread, and without journaling.
+     *
+     * @param to account receiving the money
+     * @return completed with the result of the transaction
+     */
+    protected CompletableFuture<TransactionResult> transferAsync(Account to) {
+        GringottsAccount source = GringottsEco.gringottsAccount(from);
+        GringottsAccount target = GringottsEco.gringottsAccount(to);
+
+        if (source != null && target != null) {
+            return transfers().transferAsync(source, target, CONF.getCurrency().getCentValue(value), 0, null);
+        }
+
+        if (value < 0) {
+            return CompletableFuture.completedFuture(ERROR);
+        }
+
+        return from.removeAsync(value).thenCompose(removed -> {
+            if (removed != SUCCESS) {
+                // return reason remove failed
+                return CompletableFuture.completedFuture(removed);
+            }
+
+            return to.addAsync(value).thenCompose(added -> {
+                if (added == SUCCESS) {
+                    return CompletableFuture.completedFuture(added);
+                }
+
+                // adding failed, refund source
+                return from.addAsync(value).thenApply(refund -> added);
+            });
+        });
+    }
+
     @Override
     public TaxedTransaction withTaxes() {
         double tax = CONF.transactionTaxFlat + value * CONF.transactionTaxRate;
@@ -3,7 +3,6 @@ package org.gestern.gringotts.api.impl;
 import net.milkbowl.vault.economy.Economy;
 import net.milkbowl.vault.economy.EconomyResponse;
 import net.milkbowl.vault.economy.EconomyResponse.ResponseType;
-import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.gestern.gringotts.Gringotts;
 import org.gestern.gringotts.api.Account;
@@ -12,7 +11,6 @@ import org.gestern.gringotts.api.TransactionResult;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 import static org.gestern.gringotts.Language.LANG;
 
@@ -25,6 +23,10 @@ public class VaultConnector implements Economy {
     private static final Gringotts GRINGOTTS = Gringotts.getInstance();
     private final Eco eco = GRINGOTTS.getEco();
 
+    private static OfflinePlayer resolvePlayer(String accountId) {
+        return GRINGOTTS.getAccountHolderFactory().getPlayerResolver().resolve(accountId);
+    }
+
     @Override
     public boolean isEnabled() {
         return GRINGOTTS != null && GRINGOTTS.isEnabled();
@@ -62,24 +64,7 @@ public class VaultConnector implements Economy {
 
     @Override
     public boolean hasAccount(String accountId) {
-        OfflinePlayer player = Bukkit.getPlayer(accountId);
-
-        if (player == null) {
-            //noinspection deprecation
-            if (Bukkit.getOfflinePlayer(accountId).hasPlayedBefore()) {
-                //noinspection deprecation
-                player = Bukkit.getOfflinePlayer(accountId);
-            } else {
-                try {
-                    UUID targetUuid = UUID.fromString(accountId);
-
-                    if (Bukkit.getOfflinePlayer(targetUuid).hasPlayedBefore()) {
-                        player = Bukkit.getOfflinePlayer(targetUuid);
-                    }
-                } catch (IllegalArgumentException ignored) {
-                }
-            }
-        }
+        OfflinePlayer player = resolvePlayer(accountId);
 
         if (player != null) {
             return hasAccount(player);
@@ -95,24 +80,7 @@ public class VaultConnector implements Economy {
 
     @Override
     public double getBalance(String accountId) {
-        OfflinePlayer player = Bukkit.getPlayer(accountId);
-
-        if (player == null) {
-            //noinspection deprecation
-            if (Bukkit.getOfflinePlayer(accountId).hasPlayedBefore()) {
-                //noinspection deprecation
-                player = Bukkit.getOfflinePlayer(accountId);
-            } else {
-                try {
-                    UUID targetUuid = UUID.fromString(accountId);
-
-                    if (Bukkit.getOfflinePlayer(targetUuid).hasPlayedBefore()) {
-                        player = Bukkit.getOfflinePlayer(targetUuid);
-                    }
-                } catch (IllegalArgumentException ignored) {
-                }
-            }
-        }
+        OfflinePlayer player = resolvePlayer(accountId);
 
         if (player != null) {
             return getBalance(player);
@@ -128,24 +96,7 @@ public class VaultConnector implements Economy {
 
     @Override
     public boolean has(String accountId, double amount) {
-        OfflinePlayer player = Bukkit.getPlayer(accountId);
-
-        if (player == null) {
-            //noinspection deprecation
-            if (Bukkit.getOfflinePlayer(accountId).hasPlayedBefore()) {
-                //noinspection deprecation
-                player = Bukkit.getOfflinePlayer(accountId);
-            } else {
-                try {
-                    UUID targetUuid = UUID.fromString(accountId);
-
-                    if (Bukkit.getOfflinePlayer(targetUuid).hasPlayedBefore()) {
-                        player = Bukkit.getOfflinePlayer(targetUuid);
-                    }
-                } catch (IllegalArgumentException ignored) {
-                }
-            }
-        }
+        OfflinePlayer player = resolvePlayer(accountId);
 
         if (player != null) {
             return has(player, amount);
@@ -161,24 +112,7 @@ public class VaultConnector implements Economy {
 
     @Override
     public EconomyResponse withdrawPlayer(String accountId, double amount) {
-        OfflinePlayer player = Bukkit.getPlayer(accountId);
-
-        if (player == null) {
-            //noinspection deprecation
-            if (Bukkit.getOfflinePlayer(accountId).hasPlayedBefore()) {
-                //noinspection deprecation
-                player = Bukkit.getOfflinePlayer(accountId);
-            } else {
-                try {
-                    UUID targetUuid = UUID.fromString(accountId);
-
-                    if (Bukkit.getOfflinePlayer(targetUuid).hasPlayedBefore()) {
-                        player = Bukkit.getOfflinePlayer(targetUuid);
-                    }
-                } catch (IllegalArgumentException ignored) {
-                }
-            }
-        }
+        OfflinePlayer player = resolvePlayer(accountId);
 
         if (player != null) {
             return withdrawPlayer(player, amount);
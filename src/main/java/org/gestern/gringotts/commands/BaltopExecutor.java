@@ -0,0 +1,113 @@
+package org.gestern.gringotts.commands;
+
+import com.google.common.collect.Lists;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.gestern.gringotts.BalanceLeaderboard;
+import org.gestern.gringotts.accountholder.AccountHolder;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+import static org.gestern.gringotts.Configuration.CONF;
+import static org.gestern.gringotts.Language.LANG;
+import static org.gestern.gringotts.Permissions.COMMAND_BALTOP;
+
+/**
+ * Leaderboard of the accounts with the highest balances.
+ */
+public class BaltopExecutor extends GringottsAbstractExecutor {
+    private static final int PAGE_SIZE = 10;
+
+    private static final String TAG_PAGE = "%page";
+
+    private static final String TAG_PAGES = "%pages";
+
+    private static final String TAG_RANK = "%rank";
+
+    /**
+     * Executes the given command, returning its success.
+     * <br>
+     * If false is returned, then the "usage" plugin.yml entry for this command
+     * (if defined) will be sent to the player.
+     *
+     * @param sender       Source of the command
+     * @param cmd          Command which was executed
+     * @param commandLabel Alias of the command which was used
+     * @param args         Passed command arguments
+     * @return true if a valid command, otherwise false
+     */
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender,
+                             @NotNull Command cmd,
+                             @NotNull String commandLabel,
+                             @NotNull String[] args) {
+        testPermission(sender, cmd, COMMAND_BALTOP.node);
+
+        if (args.length > 1) {
+            return false;
+        }
+
+        int page = 1;
+
+        if (args.length == 1) {
+            try {
+                page = Integer.parseInt(args[0]);
+            } catch (NumberFormatException ignored) {
+                return false;
+            }
+
+            if (page < 1) {
+                return false;
+            }
+        }
+
+        BalanceLeaderboard leaderboard = plugin.getAccounting().getLeaderboard();
+        int pages = Math.max(1, (leaderboard.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+        int offset = (page - 1) * PAGE_SIZE;
+
+        String header = LANG.baltop_header
+                .replace(TAG_PAGES, String.valueOf(pages))
+                .replace(TAG_PAGE, String.valueOf(page));
+
+        sender.sendMessage(header);
+
+        int rank = offset;
+
+        for (BalanceLeaderboard.Entry entry : leaderboard.top(offset, PAGE_SIZE)) {
+            AccountHolder owner = plugin.getAccountHolderFactory().get(entry.type, entry.id);
+            String name = owner != null ? owner.getName() : entry.id;
+            String formattedBalance = eco.currency().format(CONF.getCurrency().getDisplayValue(entry.getBalance()));
+
+            String entryMessage = LANG.baltop_entry
+                    .replace(TAG_RANK, String.valueOf(++rank))
+                    .replace(TAG_PLAYER, name)
+                    .replace(TAG_BALANCE, formattedBalance);
+
+            sender.sendMessage(entryMessage);
+        }
+
+        return true;
+    }
+
+    /**
+     * Requests a list of possible completions for a command argument.
+     *
+     * @param sender  Source of the command.  For players tab-completing a
+     *                command inside of a command block, this will be the player, not
+     *                the command block.
+     * @param command Command which was executed
+     * @param alias   The alias used
+     * @param args    The arguments passed to the command, including final
+     *                partial argument to be completed and command label
+     * @return A List of possible completions for the final argument, or null
+     * to default to the command executor
+     */
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender,
+                                      @NotNull Command command,
+                                      @NotNull String alias,
+                                      @NotNull String[] args) {
+        return Lists.newArrayList();
+    }
+}
@@ -1,7 +1,6 @@
 package org.gestern.gringotts.commands;
 
 import net.md_5.bungee.api.chat.ComponentBuilder;
-import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandException;
@@ -16,7 +15,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
-import java.util.UUID;
 
 import static org.gestern.gringotts.Language.LANG;
 import static org.gestern.gringotts.Permissions.COMMAND_DEPOSIT;
@@ -82,24 +80,7 @@ public abstract class GringottsAbstractExecutor implements TabExecutor {
 
         String recipientName = args[2];
 
-        OfflinePlayer reciepienPlayer = Bukkit.getPlayer(recipientName);
-
-        if (reciepienPlayer == null) {
-            //noinspection deprecation
-            if (Bukkit.getOfflinePlayer(recipientName).hasPlayedBefore()) {
-                //noinspection deprecation
-                reciepienPlayer = Bukkit.getOfflinePlayer(recipientName);
-            } else {
-                try {
-                    UUID targetUuid = UUID.fromString(recipientName);
-
-                    if (Bukkit.getOfflinePlayer(targetUuid).hasPlayedBefore()) {
-                        reciepienPlayer = Bukkit.getOfflinePlayer(targetUuid);
-                    }
-                } catch (IllegalArgumentException ignored) {
-                }
-            }
-        }
+        OfflinePlayer reciepienPlayer = plugin.getAccountHolderFactory().getPlayerResolver().resolve(recipientName);
 
         if (reciepienPlayer == null) {
             player.spigot().sendMessage(
@@ -2,7 +2,6 @@ package org.gestern.gringotts.commands;
 
 import com.google.common.collect.Lists;
 import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.gestern.gringotts.Gringotts;
@@ -12,12 +11,19 @@ import org.gestern.gringotts.api.TransactionResult;
 import org.gestern.gringotts.event.VaultCreationEvent;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static org.gestern.gringotts.Language.LANG;
 import static org.gestern.gringotts.api.TransactionResult.SUCCESS;
@@ -26,7 +32,11 @@ import static org.gestern.gringotts.api.TransactionResult.SUCCESS;
  * Admin commands for managing ingame aspects.
  */
 public class MoneyAdminExecutor extends GringottsAbstractExecutor {
-    private static final List<String> commands = Arrays.asList("balance", "add", "remove");
+    private static final List<String> commands = Arrays.asList("balance", "add", "remove", "bulk");
+
+    private static final String TAG_COUNT = "%count";
+
+    private static final String TAG_FILE = "%file";
 
     /**
      * Executes the given command, returning its success.
@@ -171,6 +181,26 @@ public class MoneyAdminExecutor extends GringottsAbstractExecutor {
                     sender.sendMessage(errorMessage);
                 }
 
+                return true;
+            }
+            case "bulk": {
+                if (args.length != 2) {
+                    return false;
+                }
+
+                String fileName = args[1];
+                Path folder = plugin.getDataFolder().toPath().toAbsolutePath().normalize();
+                Path file = folder.resolve(fileName).normalize();
+
+                // payout files are only read from the plugin's folder
+                if (!file.startsWith(folder)) {
+                    sender.sendMessage(LANG.moneyadmin_bulk_file.replace(TAG_FILE, fileName));
+
+                    return true;
+                }
+
+                Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> bulkPayout(sender, file, fileName));
+
                 return true;
             }
         }
@@ -178,6 +208,102 @@ public class MoneyAdminExecutor extends GringottsAbstractExecutor {
         return false;
     }
 
+    /**
+     * Read a payout file and pay out all amounts in it at once. Each line holds an account and an amount separated
+     * by whitespace. Empty lines and lines starting with # are ignored.
+     * Must be called asynchronously, only the payout itself is done on the main thread.
+     *
+     * @param sender   source of the command
+     * @param file     payout file
+     * @param fileName name of the payout file as given to the command
+     */
+    private void bulkPayout(CommandSender sender, Path file, String fileName) {
+        Map<String, Double> amounts = new LinkedHashMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] parts = line.split("\\s+");
+
+                if (parts.length != 2) {
+                    throw new IOException("Expected account and amount in line " + lineNumber);
+                }
+
+                try {
+                    amounts.merge(parts[0], Double.parseDouble(parts[1]), Double::sum);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid amount in line " + lineNumber, e);
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not read payouts from " + file + ": " + e.getMessage());
+
+            plugin.getDispatcher().submit(() -> {
+                sender.sendMessage(LANG.moneyadmin_bulk_file.replace(TAG_FILE, fileName));
+
+                return null;
+            });
+
+            return;
+        }
+
+        plugin.getDispatcher().submit(() -> {
+            Map<Account, Double> payouts = new LinkedHashMap<>();
+            Map<Account, String> names = new HashMap<>();
+
+            for (Map.Entry<String, Double> amount : amounts.entrySet()) {
+                Account target = eco.getAccount(amount.getKey());
+
+                if (!target.exists()) {
+                    sendInvalidAccountMessage(sender, amount.getKey());
+
+                    continue;
+                }
+
+                payouts.put(target, amount.getValue());
+                names.put(target, amount.getKey());
+            }
+
+            // on the main thread, the payout completes right away
+            return eco.payoutAsync(payouts).thenAccept(results -> {
+                double paid = 0;
+                int count = 0;
+
+                for (Map.Entry<Account, TransactionResult> result : results.entrySet()) {
+                    String formattedAmount = eco.currency().format(payouts.get(result.getKey()));
+
+                    if (result.getValue() == SUCCESS) {
+                        paid += payouts.get(result.getKey());
+                        count++;
+
+                        result.getKey().message(LANG.moneyadmin_add_target.replace(TAG_VALUE, formattedAmount));
+                    } else {
+                        String errorMessage = LANG.moneyadmin_bulk_error
+                                .replace(TAG_VALUE, formattedAmount)
+                                .replace(TAG_PLAYER, names.get(result.getKey()));
+
+                        sender.sendMessage(errorMessage);
+                    }
+                }
+
+                String senderMessage = LANG.moneyadmin_bulk_sender
+                        .replace(TAG_VALUE, eco.currency().format(paid))
+                        .replace(TAG_COUNT, String.valueOf(count));
+
+                sender.sendMessage(senderMessage);
+            });
+        });
+    }
+
     /**
      * Requests a list of possible completions for a command argument.
      *
@@ -219,11 +345,10 @@ public class MoneyAdminExecutor extends GringottsAbstractExecutor {
                         String[] steps = (args[1] + " ").split(":");
 
                         if (steps.length == 1) {
-                            return Stream.of(Bukkit.getOfflinePlayers())
-                                    .map(OfflinePlayer::getName)
-                                    .filter(Objects::nonNull)
-                                    .filter(name -> name.startsWith(args[1]))
-                                    .collect(Collectors.toList());
+                            return Gringotts.getInstance()
+                                    .getAccountHolderFactory()
+                                    .getPlayerNames()
+                                    .startingWith(args[1]);
                         }
 
                         try {
@@ -39,7 +39,10 @@ public class GringottsCurrency {
      * Show balances and other currency values with individual denomination names.
      */
     private final boolean namedDenominations;
-    private final Map<DenominationKey, Denomination> denoms = new HashMap<>();
+    /**
+     * Denominations by item material, to find the denomination of an item without creating a key for it.
+     */
+    private final Map<Material, Denomination[]> denomsByMaterial = new EnumMap<>(Material.class);
     private final List<Denomination> sortedDenoms = new ArrayList<>();
 
     /**
@@ -73,7 +76,20 @@ public class GringottsCurrency {
     public void addDenomination(ItemStack type, double value, String unitName, String unitNamePlural) {
         DenominationKey k = new DenominationKey(type);
         Denomination d = new Denomination(k, getCentValue(value), unitName, unitNamePlural);
-        denoms.put(k, d);
+        Denomination[] sameMaterial = denomsByMaterial.get(k.type.getType());
+
+        if (sameMaterial == null) {
+            sameMaterial = new Denomination[]{d};
+        } else {
+            // replace a denomination with an identical key, like a map would
+            List<Denomination> merged = new ArrayList<>(Arrays.asList(sameMaterial));
+
+            merged.removeIf(other -> other.getKey().equals(k));
+            merged.add(d);
+            sameMaterial = merged.toArray(new Denomination[0]);
+        }
+
+        denomsByMaterial.put(k.type.getType(), sameMaterial);
         // infrequent insertion, so I don't mind sorting on every insert
         sortedDenoms.add(d);
         Collections.sort(sortedDenoms);
@@ -89,11 +105,7 @@ public class GringottsCurrency {
      * @return the value of given stack of items
      */
     public long getValue(ItemStack stack) {
-        if (stack == null || stack.getType() == Material.AIR) {
-            return 0;
-        }
-
-        Denomination d = getDenominationOf(stack);
+        Denomination d = getDenomination(stack);
 
         return d != null ? d.getValue() * stack.getAmount() : 0;
     }
@@ -176,10 +188,27 @@ public class GringottsCurrency {
      * @param stack the stack to get the denomination for
      * @return denomination for the item stack, or null if there is no such denomination
      */
-    private Denomination getDenominationOf(ItemStack stack) {
-        DenominationKey d = new DenominationKey(stack);
+    public Denomination getDenomination(ItemStack stack) {
+        if (stack == null) {
+            return null;
+        }
+
+        Denomination[] candidates = denomsByMaterial.get(stack.getType());
+
+        if (candidates == null) {
+            return null;
+        }
+
+        for (Denomination candidate : candidates) {
+            ItemStack type = candidate.getKey().type;
+
+            // only items with meta need the expensive comparison
+            if (type.hasItemMeta() ? type.isSimilar(stack) : !stack.hasItemMeta()) {
+                return candidate;
+            }
+        }
 
-        return denoms.get(d);
+        return null;
     }
 
     /**
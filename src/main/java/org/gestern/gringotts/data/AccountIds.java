@@ -0,0 +1,62 @@
+package org.gestern.gringotts.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Account types and ids as they are stored.
+ * <p>
+ * Accounts of the built-in types are stored in lower case, so they can be looked up by exact match on the
+ * (type, owner) index. Types added by other plugins keep their case: their account holder providers may tell apart
+ * ids that differ only in case, and are asked for the holder by the stored id.
+ */
+public final class AccountIds {
+
+    /**
+     * Built-in account types, whose ids don't depend on case.
+     */
+    public static final Set<String> CASE_INSENSITIVE_TYPES =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList("player", "town", "nation")));
+
+    private AccountIds() {
+    }
+
+    private static boolean caseInsensitive(String type) {
+        return CASE_INSENSITIVE_TYPES.contains(type.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Account type as stored.
+     *
+     * @param type account type
+     * @return the type in lower case if it is a built-in type, otherwise unchanged
+     */
+    public static String type(String type) {
+        return caseInsensitive(type) ? type.toLowerCase(Locale.ROOT) : type;
+    }
+
+    /**
+     * Account owner id as stored.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     * @return the id in lower case if the account is of a built-in type, otherwise unchanged
+     */
+    public static String owner(String type, String owner) {
+        return caseInsensitive(type) ? owner.toLowerCase(Locale.ROOT) : owner;
+    }
+
+    /**
+     * Key identifying an account, equal for all spellings of the same stored account.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     * @return the stored type and owner id, joined
+     */
+    public static String key(String type, String owner) {
+        return type(type) + ":" + owner(type, owner);
+    }
+}
@@ -0,0 +1,232 @@
+package org.gestern.gringotts.data;
+
+import java.util.*;
+
+/**
+ * Spatial index of stored account chests, keyed by world and chunk, and by owning account.
+ * Allows looking up the vaults around a location or of an account without touching every vault on the server.
+ * Accounts are identified as in storage, see {@link AccountIds}.
+ */
+public class ChestIndex {
+
+    private final Map<String, Map<Long, List<Entry>>> worlds = new HashMap<>();
+
+    /**
+     * Chests by {@link AccountIds#key(String, String)} of their account.
+     */
+    private final Map<String, List<Entry>> owners = new HashMap<>();
+
+    /**
+     * Key of the chunk containing the given block coordinates.
+     *
+     * @param x block x coordinate
+     * @param z block z coordinate
+     * @return key of the chunk containing the coordinates
+     */
+    public static long chunkKey(int x, int z) {
+        return ((long) (x >> 4) << 32) | ((z >> 4) & 0xffffffffL);
+    }
+
+    /**
+     * Add a stored chest to the index.
+     *
+     * @param world world name of the vault sign
+     * @param x     x coordinate of the vault sign
+     * @param y     y coordinate of the vault sign
+     * @param z     z coordinate of the vault sign
+     * @param type  type of the owning account
+     * @param owner id of the owning account
+     */
+    public synchronized void add(String world, int x, int y, int z, String type, String owner) {
+        Entry entry = new Entry(world, x, y, z, type, owner);
+        List<Entry> chunk = worlds.computeIfAbsent(world, w -> new HashMap<>())
+                .computeIfAbsent(chunkKey(x, z), k -> new ArrayList<>(1));
+        int previous = chunk.indexOf(entry);
+
+        if (previous >= 0) {
+            removeOwned(chunk.remove(previous));
+        }
+
+        chunk.add(entry);
+        owners.computeIfAbsent(AccountIds.key(type, owner), k -> new ArrayList<>(1)).add(entry);
+    }
+
+    /**
+     * Remove the chest at the given location from the index.
+     *
+     * @param world world name of the vault sign
+     * @param x     x coordinate of the vault sign
+     * @param y     y coordinate of the vault sign
+     * @param z     z coordinate of the vault sign
+     */
+    public synchronized void remove(String world, int x, int y, int z) {
+        Map<Long, List<Entry>> chunks = worlds.get(world);
+
+        if (chunks == null) {
+            return;
+        }
+
+        long key = chunkKey(x, z);
+        List<Entry> chunk = chunks.get(key);
+
+        int index = chunk != null ? chunk.indexOf(new Entry(world, x, y, z, null, null)) : -1;
+
+        if (index >= 0) {
+            removeOwned(chunk.remove(index));
+
+            if (chunk.isEmpty()) {
+                chunks.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Remove all chests of an account from the index.
+     *
+     * @param type  type of the account
+     * @param owner id of the account
+     */
+    public synchronized void removeAccount(String type, String owner) {
+        List<Entry> owned = owners.remove(AccountIds.key(type, owner));
+
+        if (owned == null) {
+            return;
+        }
+
+        for (Entry entry : owned) {
+            Map<Long, List<Entry>> chunks = worlds.get(entry.world);
+            long key = chunkKey(entry.x, entry.z);
+            List<Entry> chunk = chunks.get(key);
+
+            chunk.remove(entry);
+
+            if (chunk.isEmpty()) {
+                chunks.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Remove a chest from the chests of its account.
+     */
+    private void removeOwned(Entry entry) {
+        String key = AccountIds.key(entry.type, entry.owner);
+        List<Entry> owned = owners.get(key);
+
+        if (owned != null) {
+            owned.remove(entry);
+
+            if (owned.isEmpty()) {
+                owners.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Get all indexed chests. Chests in the same chunk are next to each other in the result.
+     *
+     * @return all indexed chests
+     */
+    public synchronized List<Entry> entries() {
+        List<Entry> result = new ArrayList<>();
+
+        for (Map<Long, List<Entry>> chunks : worlds.values()) {
+            for (List<Entry> chunk : chunks.values()) {
+                result.addAll(chunk);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get all indexed chests of an account.
+     *
+     * @param type  type of the account
+     * @param owner id of the account
+     * @return indexed chests of the account
+     */
+    public synchronized List<Entry> entries(String type, String owner) {
+        List<Entry> owned = owners.get(AccountIds.key(type, owner));
+
+        return owned != null ? new ArrayList<>(owned) : new ArrayList<>();
+    }
+
+    /**
+     * Remove everything from the index.
+     */
+    public synchronized void clear() {
+        worlds.clear();
+        owners.clear();
+    }
+
+    /**
+     * Get all indexed chests within a horizontal distance of a location.
+     *
+     * @param world  world name
+     * @param x      block x coordinate
+     * @param z      block z coordinate
+     * @param radius maximum distance along the x and z axis
+     * @return chests within the given distance
+     */
+    public synchronized List<Entry> near(String world, int x, int z, int radius) {
+        Map<Long, List<Entry>> chunks = worlds.get(world);
+        List<Entry> result = new ArrayList<>();
+
+        if (chunks == null) {
+            return result;
+        }
+
+        for (int cx = (x - radius) >> 4; cx <= (x + radius) >> 4; cx++) {
+            for (int cz = (z - radius) >> 4; cz <= (z + radius) >> 4; cz++) {
+                List<Entry> chunk = chunks.get(chunkKey(cx << 4, cz << 4));
+
+                if (chunk == null) {
+                    continue;
+                }
+
+                for (Entry entry : chunk) {
+                    if (Math.abs(entry.x - x) <= radius && Math.abs(entry.z - z) <= radius) {
+                        result.add(entry);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Location and owner of a stored chest. Equality is based on the location only.
+     */
+    public static final class Entry {
+        public final String world;
+        public final int x, y, z;
+        public final String type;
+        public final String owner;
+
+        public Entry(String world, int x, int y, int z, String type, String owner) {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.type = type;
+            this.owner = owner;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Entry other = (Entry) o;
+
+            return x == other.x && y == other.y && z == other.z && world.equals(other.world);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(world, x, y, z);
+        }
+    }
+}
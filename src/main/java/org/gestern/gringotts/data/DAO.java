@@ -1,5 +1,6 @@
 package org.gestern.gringotts.data;
 
+import org.bukkit.Location;
 import org.gestern.gringotts.AccountChest;
 import org.gestern.gringotts.GringottsAccount;
 import org.gestern.gringotts.GringottsStorageException;
@@ -7,7 +8,11 @@ import org.gestern.gringotts.accountholder.AccountHolder;
 import org.gestern.gringotts.event.VaultCreationEvent;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * The interface Dao.
@@ -31,6 +36,17 @@ public interface DAO {
      */
     boolean deleteAccountChest(AccountChest chest);
 
+    /**
+     * Deletes the account chest marked by the sign at the given location from the datastore.
+     *
+     * @param world world name of the vault sign
+     * @param x     x coordinate of the vault sign
+     * @param y     y coordinate of the vault sign
+     * @param z     z coordinate of the vault sign
+     * @return true if the chest was deleted, false if no chest was deleted.
+     */
+    boolean deleteAccountChest(String world, int x, int y, int z);
+
     /**
      * Store the given Account to DB.
      *
@@ -85,19 +101,88 @@ public interface DAO {
     List<AccountChest> retrieveChests(GringottsAccount account);
 
     /**
-     * Gets accounts.
+     * Get all chests registered with Gringotts whose sign is within a horizontal distance of a location.
+     * If a stored chest turns out to be invalid, that chest may be removed from storage.
+     *
+     * @param location center of the search
+     * @param radius   maximum distance of the sign to the location along the x and z axis
+     * @return chests near the location
+     */
+    List<AccountChest> retrieveChestsNear(Location location, int radius);
+
+    /**
+     * Get the stored locations and owners of all account chests, without touching any world.
+     * Chests in the same chunk are next to each other in the result.
+     *
+     * @return stored chest locations
+     */
+    List<ChestIndex.Entry> retrieveChestLocations();
+
+    /**
+     * Get the stored locations of the account chests of an account, without touching any world.
+     *
+     * @param owner owner of the account
+     * @return stored chest locations of the account
+     */
+    default List<ChestIndex.Entry> retrieveChestLocations(AccountHolder owner) {
+        List<ChestIndex.Entry> chests = new ArrayList<>();
+
+        String account = AccountIds.key(owner.getType(), owner.getId());
+
+        for (ChestIndex.Entry entry : retrieveChestLocations()) {
+            if (AccountIds.key(entry.type, entry.owner).equals(account)) {
+                chests.add(entry);
+            }
+        }
+
+        return chests;
+    }
+
+    /**
+     * Gets accounts. This holds all accounts in memory at once, prefer {@link #forEachAccount(Consumer)} for
+     * large tables.
      *
      * @return the accounts
      */
-    List<String> getAccounts();
+    default List<String> getAccounts() {
+        List<String> accounts = new ArrayList<>();
+
+        forEachAccount(accounts::add);
+
+        return accounts;
+    }
 
     /**
-     * Gets accounts.
+     * Gets accounts. This holds all accounts of the type in memory at once, prefer
+     * {@link #forEachAccount(VaultCreationEvent.Type, Consumer)} for large tables.
      *
      * @param type the type
      * @return the accounts
      */
-    List<String> getAccounts(VaultCreationEvent.Type type);
+    default List<String> getAccounts(VaultCreationEvent.Type type) {
+        List<String> accounts = new ArrayList<>();
+
+        forEachAccount(type, accounts::add);
+
+        return accounts;
+    }
+
+    /**
+     * Pass every stored account to an action, as "type:owner". Accounts are read from the database while they are
+     * processed, so memory use does not grow with the number of accounts.
+     *
+     * @param action action called for each account
+     */
+    void forEachAccount(Consumer<String> action);
+
+    /**
+     * Pass every stored account of a type to an action, as "type:owner". Accounts are read from the database while
+     * they are processed, so memory use does not grow with the number of accounts.
+     *
+     * @param type   the type
+     * @param action action called for each account
+     */
+    void forEachAccount(VaultCreationEvent.Type type, Consumer<String> action);
 
     /**
      * Store an amount of cents to a given account.
@@ -108,6 +193,27 @@ public interface DAO {
      */
     boolean storeCents(GringottsAccount account, long amount);
 
+    /**
+     * Store an amount of cents to the account with the given type and owner id.
+     *
+     * @param type   the account type
+     * @param owner  the account owner id
+     * @param amount amount to store to account
+     * @return true if storing was successful, false otherwise.
+     */
+    boolean storeCents(String type, String owner, long amount);
+
+    /**
+     * Atomically add a signed amount of cents to a given account.
+     * The change is only applied if the resulting amount is not negative.
+     *
+     * @param account account to change
+     * @param delta   amount of cents to add, negative to subtract
+     * @return the new amount of cents stored in the account, or -1 if the account does not exist or the change
+     * would make its cents negative
+     */
+    long addCents(GringottsAccount account, long delta);
+
     /**
      * Get the cents stored for a given account.
      *
@@ -116,6 +222,24 @@ public interface DAO {
      */
     long retrieveCents(GringottsAccount account);
 
+    /**
+     * Get the cents stored for all accounts of a type, in a single query.
+     *
+     * @param type the account type
+     * @return amount of cents stored in each account, by owner id
+     */
+    Map<String, Long> retrieveCents(String type);
+
+    /**
+     * Get the cents stored for the given accounts of a type, with as few queries as possible.
+     * Accounts that are not stored are missing from the result.
+     *
+     * @param type   the account type
+     * @param owners the account owner ids
+     * @return amount of cents stored in each account, by owner id
+     */
+    Map<String, Long> retrieveCents(String type, Collection<String> owners);
+
     /**
      * Delete an account and associated data from the storage.
      *
@@ -149,6 +273,17 @@ public interface DAO {
      */
     boolean deleteAccountChests(String account);
 
+    /**
+     * Run several storage operations as one batch.
+     * Implementations supporting transactions execute the whole batch in a single transaction. When the batch throws,
+     * its changes are rolled back and the exception is passed on, possibly wrapped in a
+     * {@link GringottsStorageException}.
+     *
+     * @param batch the storage operations to run
+     * @throws GringottsStorageException when the batch failed
+     */
+    void batch(Runnable batch);
+
     /**
      * Shutdown the database connection.
      */
@@ -11,10 +11,15 @@ import org.gestern.gringotts.event.VaultCreationEvent;
 import org.jetbrains.annotations.NotNull;
 
 import java.sql.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import static org.gestern.gringotts.Configuration.CONF;
@@ -237,7 +242,7 @@ public class DerbyDAO implements DAO {
         try {
             checkConnection();
 
-            return deleteAccountChest(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+            return deleteAccountChestRow(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
         } catch (SQLException e) {
             throw new GringottsStorageException("Failed to delete account chest: " + chest, e);
         }
@@ -265,7 +270,18 @@ public class DerbyDAO implements DAO {
         }
     }
 
-    private boolean deleteAccountChest(String world, int x, int y, int z) throws SQLException {
+    @Override
+    public synchronized boolean deleteAccountChest(String world, int x, int y, int z) {
+        try {
+            checkConnection();
+
+            return deleteAccountChestRow(world, x, y, z);
+        } catch (SQLException e) {
+            throw new GringottsStorageException("Failed to delete account chest in " + world, e);
+        }
+    }
+
+    private boolean deleteAccountChestRow(String world, int x, int y, int z) throws SQLException {
         deleteAccountChest.setString(1, world);
         deleteAccountChest.setInt(2, x);
         deleteAccountChest.setInt(3, y);
@@ -517,7 +533,7 @@ public class DerbyDAO implements DAO {
                         log.info("AccountHolder " + type + ":" + ownerId + " is not valid. " +
                                 "Deleting associated account chest at " + signBlock.getLocation());
 
-                        deleteAccountChest(
+                        deleteAccountChestRow(
                                 signBlock.getWorld().getName(),
                                 signBlock.getX(),
                                 signBlock.getY(),
@@ -529,7 +545,7 @@ public class DerbyDAO implements DAO {
                     }
                 } else {
                     // remove accountchest from storage if it is not a valid chest
-                    deleteAccountChest(
+                    deleteAccountChestRow(
                             signBlock.getWorld().getName(),
                             signBlock.getX(),
                             signBlock.getY(),
@@ -575,7 +591,7 @@ public class DerbyDAO implements DAO {
                 World world = Bukkit.getWorld(worldName);
 
                 if (world == null) {
-                    deleteAccountChest(worldName, x, y, x); // FIXME: Isn't actually removing the non-existent vaults..
+                    deleteAccountChestRow(worldName, x, y, x); // FIXME: Isn't actually removing the non-existent vaults..
 
                     Gringotts.getInstance().getLogger().severe(String.format(
                             "Vault of %s located on a non-existent world. Deleting Vault on world %s",
@@ -596,7 +612,7 @@ public class DerbyDAO implements DAO {
                     chests.add(new AccountChest(optionalSign.get(), account));
                 } else {
                     // remove accountchest from storage if it is not a valid chest
-                    deleteAccountChest(
+                    deleteAccountChestRow(
                             signBlock.getWorld().toString(),
                             signBlock.getX(),
                             signBlock.getY(),
@@ -617,25 +633,57 @@ public class DerbyDAO implements DAO {
         return chests;
     }
 
-    /**
-     * Gets accounts.
-     *
-     * @return the accounts
-     */
     @Override
-    public List<String> getAccounts() {
-        return null;
+    public synchronized List<ChestIndex.Entry> retrieveChestLocations() {
+        List<ChestIndex.Entry> entries = new LinkedList<>();
+
+        for (AccountChest chest : retrieveChests()) {
+            Location mark = chest.sign.getLocation();
+
+            entries.add(new ChestIndex.Entry(
+                    mark.getWorld().getName(),
+                    mark.getBlockX(),
+                    mark.getBlockY(),
+                    mark.getBlockZ(),
+                    chest.account.owner.getType(),
+                    chest.account.owner.getId()
+            ));
+        }
+
+        return entries;
+    }
+
+    @Override
+    public synchronized List<AccountChest> retrieveChestsNear(Location location, int radius) {
+        List<AccountChest> chests = new LinkedList<>();
+
+        for (AccountChest chest : retrieveChests()) {
+            Location mark = chest.sign.getLocation();
+
+            if (Objects.equals(mark.getWorld(), location.getWorld()) &&
+                    Math.abs(mark.getBlockX() - location.getBlockX()) <= radius &&
+                    Math.abs(mark.getBlockZ() - location.getBlockZ()) <= radius) {
+                chests.add(chest);
+            }
+        }
+
+        return chests;
+    }
+
+    @Override
+    public void forEachAccount(Consumer<String> action) {
+        for (DerbyAccount account : getAccountsRaw()) {
+            action.accept(account.type + ":" + account.owner);
+        }
     }
 
-    /**
-     * Gets accounts.
-     *
-     * @param type the type
-     * @return the accounts
-     */
     @Override
-    public List<String> getAccounts(VaultCreationEvent.Type type) {
-        return null;
+    public void forEachAccount(VaultCreationEvent.Type type, Consumer<String> action) {
+        for (DerbyAccount account : getAccountsRaw()) {
+            if (type.getId().equals(account.type)) {
+                action.accept(account.type + ":" + account.owner);
+            }
+        }
     }
 
     /* (non-Javadoc)
@@ -643,21 +691,59 @@ public class DerbyDAO implements DAO {
      */
     @Override
     public synchronized boolean storeCents(GringottsAccount account, long amount) {
+        return storeCents(account.owner.getType(), account.owner.getId(), amount);
+    }
+
+    @Override
+    public synchronized boolean storeCents(String type, String owner, long amount) {
         try {
             checkConnection();
 
             storeCents.setLong(1, amount);
-            storeCents.setString(2, account.owner.getId());
-            storeCents.setString(3, account.owner.getType());
+            storeCents.setString(2, owner);
+            storeCents.setString(3, type);
 
             int updated = storeCents.executeUpdate();
 
             return updated > 0;
         } catch (SQLException e) {
-            throw new GringottsStorageException("Failed to get cents for account: " + account, e);
+            throw new GringottsStorageException("Failed to get cents for account: " + type + ":" + owner, e);
         }
     }
 
+    @Override
+    public synchronized long addCents(GringottsAccount account, long delta) {
+        long cents = retrieveCents(account) + delta;
+
+        if (cents < 0 || !storeCents(account, cents)) {
+            return -1;
+        }
+
+        return cents;
+    }
+
+    @Override
+    public Map<String, Long> retrieveCents(String type) {
+        Map<String, Long> cents = new HashMap<>();
+
+        for (DerbyAccount account : getAccountsRaw()) {
+            if (type.equals(account.type)) {
+                cents.put(account.owner, account.cents);
+            }
+        }
+
+        return cents;
+    }
+
+    @Override
+    public Map<String, Long> retrieveCents(String type, Collection<String> owners) {
+        Map<String, Long> cents = retrieveCents(type);
+
+        cents.keySet().retainAll(new HashSet<>(owners));
+
+        return cents;
+    }
+
     /* (non-Javadoc)
      * @see org.gestern.gringotts.data.DAO#getCents(org.gestern.gringotts.GringottsAccount)
      */
@@ -691,6 +777,15 @@ public class DerbyDAO implements DAO {
         }
     }
 
+    /* (non-Javadoc)
+     * @see org.gestern.gringotts.data.DAO#batch(java.lang.Runnable)
+     */
+    @Override
+    public synchronized void batch(Runnable batch) {
+        // the legacy derby database is only used for migration, no need for transactions here
+        batch.run();
+    }
+
     /* (non-Javadoc)
      * @see org.gestern.gringotts.data.DAO#shutdown()
      */
@@ -4,19 +4,25 @@ import com.avaje.ebean.EbeanServer;
 import com.avaje.ebean.SqlQuery;
 import com.avaje.ebean.SqlRow;
 import com.avaje.ebean.SqlUpdate;
+import com.google.common.util.concurrent.Striped;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
 import org.gestern.gringotts.AccountChest;
 import org.gestern.gringotts.Gringotts;
 import org.gestern.gringotts.GringottsAccount;
+import org.gestern.gringotts.GringottsStorageException;
 import org.gestern.gringotts.Util;
 import org.gestern.gringotts.accountholder.AccountHolder;
 import org.gestern.gringotts.event.VaultCreationEvent;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import static org.gestern.gringotts.Configuration.CONF;
@@ -29,6 +35,30 @@ public class EBeanDAO implements DAO {
     private static EBeanDAO dao;
     private final EbeanServer db = Gringotts.getInstance().getDatabase();
     private final Logger log = Gringotts.getInstance().getLogger();
+    private final ChestIndex chestIndex = new ChestIndex();
+    private volatile boolean chestIndexLoaded = false;
+
+    /**
+     * Primary keys of accounts known to exist, keyed by {@link AccountIds#key(String, String)}.
+     */
+    private final Map<String, Integer> accountIds = new ConcurrentHashMap<>();
+
+    /**
+     * Serializes operations on the same account, while unrelated accounts proceed concurrently.
+     */
+    private final Striped<Lock> accountLocks = Striped.lock(64);
+
+    /**
+     * Serializes writes to the chest table and the chest index.
+     */
+    private final Lock chestLock = new ReentrantLock();
+
+    /**
+     * SQLite allows only one writer at a time, and each thread writes through its own connection. Every write takes
+     * this lock first, before any account or chest lock and before a batch opens its transaction, so writers queue
+     * here instead of failing on a busy database, and a batch never waits for a lock while holding a transaction.
+     */
+    private final Lock writeLock = new ReentrantLock();
 
     /**
      * Gets dao.
@@ -54,115 +84,253 @@ public class EBeanDAO implements DAO {
         return Arrays.asList(EBeanAccount.class, EBeanAccountChest.class);
     }
 
-    @Override
-    public synchronized boolean storeAccountChest(AccountChest chest) {
-        SqlUpdate storeChest = db.createSqlUpdate(
-                "insert into gringotts_accountchest (world,x,y,z,account) " +
-                        "values (:world, :x, :y, :z, (select id from gringotts_account where owner=:owner and " +
-                        "type=:type))");
+    /**
+     * Acquire the locks of the given accounts, in a globally consistent order.
+     *
+     * @param type   account type
+     * @param owners ids of the accounts
+     * @return the acquired locks, to be released with {@link #unlock(List)}
+     */
+    private List<Lock> lockAccounts(String type, String... owners) {
+        List<String> keys = new ArrayList<>(owners.length);
 
-        Sign mark = chest.sign;
-        storeChest.setParameter("world", mark.getWorld().getName());
-        storeChest.setParameter("x", mark.getX());
-        storeChest.setParameter("y", mark.getY());
-        storeChest.setParameter("z", mark.getZ());
-        storeChest.setParameter("owner", chest.account.owner.getId());
-        storeChest.setParameter("type", chest.account.owner.getType());
+        for (String owner : owners) {
+            keys.add(AccountIds.key(type, owner));
+        }
+
+        List<Lock> locks = new ArrayList<>(owners.length);
+
+        for (Lock lock : accountLocks.bulkGet(keys)) {
+            lock.lock();
+            locks.add(lock);
+        }
 
-        return storeChest.execute() > 0;
+        return locks;
     }
 
-    @Override
-    public synchronized boolean deleteAccountChest(AccountChest chest) {
-        Sign mark = chest.sign;
+    private static void unlock(List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
 
-        return deleteAccountChest(mark.getWorld().getName(), mark.getX(), mark.getY(), mark.getZ());
+    /**
+     * Acquire the write lock and then the locks of the given accounts.
+     *
+     * @param type   account type
+     * @param owners ids of the accounts
+     * @return the acquired account locks, to be released with {@link #unlockWrite(List)}
+     */
+    private List<Lock> lockForWrite(String type, String... owners) {
+        writeLock.lock();
+
+        try {
+            return lockAccounts(type, owners);
+        } catch (RuntimeException e) {
+            writeLock.unlock();
+
+            throw e;
+        }
     }
 
-    @Override
-    public synchronized boolean storeAccount(GringottsAccount account) {
-        AccountHolder owner = account.owner;
+    private void unlockWrite(List<Lock> locks) {
+        unlock(locks);
+        writeLock.unlock();
+    }
 
-        if (hasAccount(owner)) {
-            return false;
+    /**
+     * Number of owners looked up per query in bulk balance reads.
+     */
+    private static final int BULK_CHUNK_SIZE = 500;
+
+    /**
+     * Number of rows fetched from the database at a time when enumerating accounts.
+     */
+    private static final int FETCH_SIZE = 1000;
+
+    private static String accountKey(String type, String owner) {
+        return AccountIds.key(type, owner);
+    }
+
+    /**
+     * Primary key of an account, loaded from storage on first use.
+     *
+     * @param type  account type
+     * @param owner account owner id
+     * @return the primary key, or null if the account does not exist
+     */
+    private Integer accountId(String type, String owner) {
+        String key = accountKey(type, owner);
+        Integer id = accountIds.get(key);
+
+        if (id != null) {
+            return id;
         }
 
-        if (Objects.equals(owner.getType(), "town") || Objects.equals(owner.getType(), "nation")) {
-            if (hasAccount(new AccountHolder() {
-                @Override
-                public String getName() {
-                    return owner.getName();
-                }
+        // under the account lock, so a concurrent delete or rename can't be overwritten with a stale id
+        List<Lock> locks = lockAccounts(type, owner);
 
-                @Override
-                public void sendMessage(String message) {
+        try {
+            SqlQuery findAccount = db.createSqlQuery("SELECT id FROM gringotts_account " +
+                    "WHERE owner = :owner and type = :type");
 
-                }
+            findAccount.setParameter("owner", AccountIds.owner(type, owner));
+            findAccount.setParameter("type", AccountIds.type(type));
 
-                @Override
-                public String getType() {
-                    return owner.getType();
-                }
+            SqlRow result = findAccount.findUnique();
 
-                @Override
-                public String getId() {
-                    return owner.getType() + "-" + owner.getName();
-                }
-            })) {
-                renameAccount(
-                        owner.getType(),
-                        owner.getType() + "-" + owner.getName(),
-                        owner.getId()
+            if (result == null) {
+                return null;
+            }
+
+            id = result.getInteger("id");
+            accountIds.put(key, id);
+
+            return id;
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    @Override
+    public boolean storeAccountChest(AccountChest chest) {
+        Integer accountId = accountId(chest.account.owner.getType(), chest.account.owner.getId());
+
+        if (accountId == null) {
+            return false;
+        }
+
+        writeLock.lock();
+        chestLock.lock();
+
+        try {
+            SqlUpdate storeChest = db.createSqlUpdate(
+                    "insert into gringotts_accountchest (world,x,y,z,account) " +
+                            "values (:world, :x, :y, :z, :account)");
+
+            Sign mark = chest.sign;
+            storeChest.setParameter("world", mark.getWorld().getName());
+            storeChest.setParameter("x", mark.getX());
+            storeChest.setParameter("y", mark.getY());
+            storeChest.setParameter("z", mark.getZ());
+            storeChest.setParameter("account", accountId);
+
+            if (storeChest.execute() > 0) {
+                chestIndex.add(
+                        mark.getWorld().getName(),
+                        mark.getX(),
+                        mark.getY(),
+                        mark.getZ(),
+                        AccountIds.type(chest.account.owner.getType()),
+                        AccountIds.owner(chest.account.owner.getType(), chest.account.owner.getId())
                 );
 
-                return false;
+                return true;
             }
-        }
 
-        EBeanAccount acc = new EBeanAccount();
-
-        acc.setOwner(owner.getId());
-        acc.setType(owner.getType());
-
-        // TODO this is business logic and should probably be outside of the DAO implementation.
-        // also find a more elegant way of handling different account types
-        double startValue = 0;
-        String type = owner.getType();
-
-        switch (type) {
-            case "player":
-                startValue = CONF.startBalancePlayer;
-                break;
-            case "faction":
-                startValue = CONF.startBalanceFaction;
-                break;
-            case "town":
-                startValue = CONF.startBalanceTown;
-                break;
-            case "nation":
-                startValue = CONF.startBalanceNation;
-                break;
+            return false;
+        } finally {
+            chestLock.unlock();
+            writeLock.unlock();
         }
+    }
 
-        acc.setCents(CONF.getCurrency().getCentValue(startValue));
-        db.save(acc);
+    @Override
+    public boolean deleteAccountChest(AccountChest chest) {
+        Sign mark = chest.sign;
 
-        return true;
+        return deleteAccountChest(mark.getWorld().getName(), mark.getX(), mark.getY(), mark.getZ());
     }
 
     @Override
-    public synchronized boolean hasAccount(AccountHolder accountHolder) {
-        int accCount = db
-                .find(EBeanAccount.class)
-                .where()
-                .ieq("type", accountHolder.getType()).ieq("owner", accountHolder.getId())
-                .findRowCount();
+    public boolean storeAccount(GringottsAccount account) {
+        AccountHolder owner = account.owner;
+        List<Lock> locks = lockForWrite(
+                owner.getType(),
+                owner.getId(),
+                owner.getType() + "-" + owner.getName()
+        );
+
+        try {
+            if (hasAccount(owner)) {
+                return false;
+            }
+
+            if (Objects.equals(owner.getType(), "town") || Objects.equals(owner.getType(), "nation")) {
+                if (hasAccount(new AccountHolder() {
+                    @Override
+                    public String getName() {
+                        return owner.getName();
+                    }
+
+                    @Override
+                    public void sendMessage(String message) {
+
+                    }
+
+                    @Override
+                    public String getType() {
+                        return owner.getType();
+                    }
+
+                    @Override
+                    public String getId() {
+                        return owner.getType() + "-" + owner.getName();
+                    }
+                })) {
+                    renameAccount(
+                            owner.getType(),
+                            owner.getType() + "-" + owner.getName(),
+                            owner.getId()
+                    );
+
+                    return false;
+                }
+            }
+
+            EBeanAccount acc = new EBeanAccount();
+
+            acc.setOwner(AccountIds.owner(owner.getType(), owner.getId()));
+            acc.setType(AccountIds.type(owner.getType()));
+
+            // TODO this is business logic and should probably be outside of the DAO implementation.
+            // also find a more elegant way of handling different account types
+            double startValue = 0;
+            String type = owner.getType();
+
+            switch (type) {
+                case "player":
+                    startValue = CONF.startBalancePlayer;
+                    break;
+                case "faction":
+                    startValue = CONF.startBalanceFaction;
+                    break;
+                case "town":
+                    startValue = CONF.startBalanceTown;
+                    break;
+                case "nation":
+                    startValue = CONF.startBalanceNation;
+                    break;
+            }
+
+            acc.setCents(CONF.getCurrency().getCentValue(startValue));
+            db.save(acc);
+
+            accountIds.put(accountKey(acc.getType(), acc.getOwner()), acc.getId());
 
-        return accCount == 1;
+            return true;
+        } finally {
+            unlockWrite(locks);
+        }
+    }
+
+    @Override
+    public boolean hasAccount(AccountHolder accountHolder) {
+        return accountId(accountHolder.getType(), accountHolder.getId()) != null;
     }
 
     @Override
-    public synchronized List<AccountChest> retrieveChests() {
+    public List<AccountChest> retrieveChests() {
         List<SqlRow> result = db.createSqlQuery(
                 "SELECT ac.world, ac.x, ac.y, ac.z, a.type, a.owner FROM gringotts_accountchest ac JOIN gringotts_account a ON ac.account = a.id "
         ).findList();
@@ -170,67 +338,158 @@ public class EBeanDAO implements DAO {
         List<AccountChest> chests = new LinkedList<>();
 
         for (SqlRow c : result) {
-            String worldName = c.getString("world");
-            int x = c.getInteger("x");
-            int y = c.getInteger("y");
-            int z = c.getInteger("z");
+            AccountChest chest = resolveChest(
+                    c.getString("world"),
+                    c.getInteger("x"),
+                    c.getInteger("y"),
+                    c.getInteger("z"),
+                    c.getString("type"),
+                    c.getString("owner")
+            );
+
+            if (chest != null) {
+                chests.add(chest);
+            }
+        }
 
-            String type = c.getString("type");
-            String ownerId = c.getString("owner");
+        return chests;
+    }
 
-            World world = Bukkit.getWorld(worldName);
-            if (world == null) {
-                continue; // skip vaults in non-existing worlds
+    @Override
+    public List<AccountChest> retrieveChestsNear(Location location, int radius) {
+        World world = location.getWorld();
+
+        if (world == null) {
+            return new LinkedList<>();
+        }
+
+        ensureChestIndex();
+
+        List<AccountChest> chests = new LinkedList<>();
+
+        for (ChestIndex.Entry entry : chestIndex.near(
+                world.getName(),
+                location.getBlockX(),
+                location.getBlockZ(),
+                radius
+        )) {
+            AccountChest chest = resolveChest(entry.world, entry.x, entry.y, entry.z, entry.type, entry.owner);
+
+            if (chest != null) {
+                chests.add(chest);
             }
+        }
 
-            Block signBlock = world.getBlockAt(x, y, z);
-            Optional<Sign> optionalSign = Util.getBlockStateAs(
-                    signBlock,
-                    Sign.class
-            );
+        return chests;
+    }
 
-            if (optionalSign.isPresent()) {
-                AccountHolder owner = Gringotts.getInstance().getAccountHolderFactory().get(type, ownerId);
-
-                if (owner == null) {
-                    log.info(String.format(
-                            "AccountHolder %s:%s is not valid. Deleting associated account chest at %s",
-                            type,
-                            ownerId,
-                            signBlock.getLocation()
-                    ));
-
-                    deleteAccountChest(
-                            signBlock.getWorld().getName(),
-                            signBlock.getX(),
-                            signBlock.getY(),
-                            signBlock.getZ()
-                    );
-                } else {
-                    GringottsAccount ownerAccount = new GringottsAccount(owner);
+    @Override
+    public List<ChestIndex.Entry> retrieveChestLocations() {
+        ensureChestIndex();
+
+        return chestIndex.entries();
+    }
+
+    @Override
+    public List<ChestIndex.Entry> retrieveChestLocations(AccountHolder owner) {
+        ensureChestIndex();
+
+        return chestIndex.entries(owner.getType(), owner.getId());
+    }
+
+    /**
+     * Load the chest index if it isn't loaded yet.
+     */
+    private void ensureChestIndex() {
+        if (!chestIndexLoaded) {
+            chestLock.lock();
 
-                    chests.add(new AccountChest(optionalSign.get(), ownerAccount));
+            try {
+                if (!chestIndexLoaded) {
+                    loadChestIndex();
                 }
-            } else {
-                // remove accountchest from storage if it is not a valid chest
-                deleteAccountChest(worldName, x, y, z);
+            } finally {
+                chestLock.unlock();
             }
         }
+    }
 
-        return chests;
+    /**
+     * Fill the chest index from the chest table. Only reads stored locations, without touching any world.
+     * Must be called while holding the chest lock.
+     */
+    private void loadChestIndex() {
+        chestIndex.clear();
+
+        for (SqlRow c : db.createSqlQuery(
+                "SELECT ac.world, ac.x, ac.y, ac.z, a.type, a.owner FROM gringotts_accountchest ac JOIN gringotts_account a ON ac.account = a.id "
+        ).findList()) {
+            chestIndex.add(
+                    c.getString("world"),
+                    c.getInteger("x"),
+                    c.getInteger("y"),
+                    c.getInteger("z"),
+                    c.getString("type"),
+                    c.getString("owner")
+            );
+        }
+
+        chestIndexLoaded = true;
     }
 
-    private boolean deleteAccountChest(String world, int x, int y, int z) {
-        SqlUpdate deleteChest = db.createSqlUpdate(
-                "delete from gringotts_accountchest where world = :world and x = :x and y = :y and z = :z"
+    /**
+     * Create the account chest for a stored chest location.
+     * Invalid chests are skipped and left in storage for the vault sweeper to remove.
+     *
+     * @return the account chest, or null if the location does not hold a valid account chest
+     */
+    private AccountChest resolveChest(String worldName, int x, int y, int z, String type, String ownerId) {
+        World world = Bukkit.getWorld(worldName);
+
+        if (world == null) {
+            return null; // skip vaults in non-existing worlds
+        }
+
+        Optional<Sign> optionalSign = Util.getBlockStateAs(
+                world.getBlockAt(x, y, z),
+                Sign.class
         );
 
-        deleteChest.setParameter("world", world);
-        deleteChest.setParameter("x", x);
-        deleteChest.setParameter("y", y);
-        deleteChest.setParameter("z", z);
+        if (!optionalSign.isPresent()) {
+            return null;
+        }
+
+        AccountHolder owner = Gringotts.getInstance().getAccountHolderFactory().get(type, ownerId);
+
+        if (owner == null) {
+            return null;
+        }
 
-        return deleteChest.execute() > 0;
+        return new AccountChest(optionalSign.get(), new GringottsAccount(owner));
+    }
+
+    @Override
+    public boolean deleteAccountChest(String world, int x, int y, int z) {
+        writeLock.lock();
+        chestLock.lock();
+
+        try {
+            SqlUpdate deleteChest = db.createSqlUpdate(
+                    "delete from gringotts_accountchest where world = :world and x = :x and y = :y and z = :z"
+            );
+
+            deleteChest.setParameter("world", world);
+            deleteChest.setParameter("x", x);
+            deleteChest.setParameter("y", y);
+            deleteChest.setParameter("z", z);
+
+            chestIndex.remove(world, x, y, z);
+
+            return deleteChest.execute() > 0;
+        } finally {
+            chestLock.unlock();
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -256,28 +515,44 @@ public class EBeanDAO implements DAO {
      */
     @Override
     public boolean renameAccount(String type, String oldName, String newName) {
-        SqlUpdate renameAccount = db.createSqlUpdate(
-                "UPDATE gringotts_account SET owner = :newName WHERE owner = :oldName and type = :type"
-        );
+        List<Lock> locks = lockForWrite(type, oldName, newName);
+
+        try {
+            SqlUpdate renameAccount = db.createSqlUpdate(
+                    "UPDATE gringotts_account SET owner = :newName WHERE owner = :oldName and type = :type"
+            );
+
+            renameAccount.setParameter("type", AccountIds.type(type));
+            renameAccount.setParameter("oldName", AccountIds.owner(type, oldName));
+            renameAccount.setParameter("newName", AccountIds.owner(type, newName));
 
-        renameAccount.setParameter("type", type);
-        renameAccount.setParameter("oldName", oldName);
-        renameAccount.setParameter("newName", newName);
+            // owners of indexed chests changed, rebuild the index when it is needed next
+            chestIndexLoaded = false;
 
-        return renameAccount.execute() > 0;
+            accountIds.remove(accountKey(type, oldName));
+            accountIds.remove(accountKey(type, newName));
+
+            return renameAccount.execute() > 0;
+        } finally {
+            unlockWrite(locks);
+        }
     }
 
     @Override
-    public synchronized List<AccountChest> retrieveChests(GringottsAccount account) {
+    public List<AccountChest> retrieveChests(GringottsAccount account) {
         // TODO ensure world interaction is done in sync task
-        SqlQuery getChests = db.createSqlQuery("SELECT ac.world, ac.x, ac.y, ac.z " +
-                "FROM gringotts_accountchest ac JOIN gringotts_account a ON ac.account = a.id " +
-                "WHERE a.owner = :owner and a.type = :type");
+        List<AccountChest> chests = new LinkedList<>();
+        Integer accountId = accountId(account.owner.getType(), account.owner.getId());
+
+        if (accountId == null) {
+            return chests;
+        }
 
-        getChests.setParameter("owner", account.owner.getId());
-        getChests.setParameter("type", account.owner.getType());
+        SqlQuery getChests = db.createSqlQuery("SELECT world, x, y, z FROM gringotts_accountchest " +
+                "WHERE account = :account");
+
+        getChests.setParameter("account", accountId);
 
-        List<AccountChest> chests = new LinkedList<>();
         for (SqlRow result : getChests.findSet()) {
             String worldName = result.getString("world");
             int x = result.getInteger("x");
@@ -295,124 +570,260 @@ public class EBeanDAO implements DAO {
                     Sign.class
             );
 
-            if (optionalSign.isPresent()) {
-                chests.add(new AccountChest(optionalSign.get(), account));
-            } else {
-                // remove accountchest from storage if it is not a valid chest
-                deleteAccountChest(worldName, x, y, z);
-            }
+            // chests without a sign are left for the vault sweeper to remove
+            optionalSign.ifPresent(sign -> chests.add(new AccountChest(sign, account)));
         }
 
         return chests;
     }
 
-    /**
-     * Gets accounts.
-     *
-     * @return the accounts
-     */
     @Override
-    public List<String> getAccounts() {
+    public void forEachAccount(Consumer<String> action) {
         SqlQuery getAccounts = db.createSqlQuery("SELECT type, owner FROM gringotts_account");
 
-        List<String> returned = new LinkedList<>();
+        getAccounts.setBufferFetchSizeHint(FETCH_SIZE);
 
-        for (SqlRow result : getAccounts.findSet()) {
+        // with a listener, rows are handed over one at a time instead of being collected
+        getAccounts.setListener(result -> {
             String type = result.getString("type");
             String owner = result.getString("owner");
 
             if (type != null && owner != null) {
-                returned.add(type + ":" + owner);
+                action.accept(type + ":" + owner);
             }
-        }
+        });
 
-        return returned;
+        getAccounts.findList();
     }
 
-    /**
-     * Gets accounts.
-     *
-     * @param type the type
-     * @return the accounts
-     */
     @Override
-    public List<String> getAccounts(VaultCreationEvent.Type type) {
+    public void forEachAccount(VaultCreationEvent.Type type, Consumer<String> action) {
         SqlQuery getAccounts = db.createSqlQuery("SELECT owner FROM gringotts_account WHERE type = :type");
 
         String typeId = type.getId();
 
-        getAccounts.setParameter("type", typeId);
+        getAccounts.setParameter("type", AccountIds.type(typeId));
+        getAccounts.setBufferFetchSizeHint(FETCH_SIZE);
 
-        List<String> returned = new LinkedList<>();
-
-        for (SqlRow result : getAccounts.findSet()) {
+        getAccounts.setListener(result -> {
             String owner = result.getString("owner");
 
             if (owner != null) {
-                returned.add(typeId + ":" + owner);
+                action.accept(typeId + ":" + owner);
+            }
+        });
+
+        getAccounts.findList();
+    }
+
+    @Override
+    public boolean storeCents(GringottsAccount account, long amount) {
+        return storeCents(account.owner.getType(), account.owner.getId(), amount);
+    }
+
+    @Override
+    public boolean storeCents(String type, String owner, long amount) {
+        List<Lock> locks = lockForWrite(type, owner);
+
+        try {
+            Integer accountId = accountId(type, owner);
+
+            if (accountId == null) {
+                return false;
+            }
+
+            SqlUpdate up = db.createSqlUpdate("UPDATE gringotts_account SET cents = :cents WHERE id = :id");
+
+            up.setParameter("cents", amount);
+            up.setParameter("id", accountId);
+
+            return up.execute() == 1;
+        } finally {
+            unlockWrite(locks);
+        }
+    }
+
+    @Override
+    public long addCents(GringottsAccount account, long delta) {
+        String type = account.owner.getType();
+        String owner = account.owner.getId();
+        List<Lock> locks = lockForWrite(type, owner);
+
+        try {
+            Integer accountId = accountId(type, owner);
+
+            if (accountId == null) {
+                return -1;
             }
+
+            SqlUpdate up = db.createSqlUpdate("UPDATE gringotts_account SET cents = cents + :delta " +
+                    "WHERE id = :id and cents + :delta >= 0");
+
+            up.setParameter("delta", delta);
+            up.setParameter("id", accountId);
+
+            if (up.execute() != 1) {
+                return -1;
+            }
+
+            SqlQuery getCents = db.createSqlQuery("SELECT cents FROM gringotts_account WHERE id = :id");
+
+            getCents.setParameter("id", accountId);
+
+            return getCents.findUnique().getLong("cents");
+        } finally {
+            unlockWrite(locks);
         }
+    }
+
+    @Override
+    public long retrieveCents(GringottsAccount account) {
+        List<Lock> locks = lockAccounts(account.owner.getType(), account.owner.getId());
+
+        try {
+            Integer accountId = accountId(account.owner.getType(), account.owner.getId());
+
+            if (accountId == null) {
+                throw new GringottsStorageException("Account does not exist: " + account.owner);
+            }
+
+            SqlQuery getCents = db.createSqlQuery("SELECT cents FROM gringotts_account WHERE id = :id");
 
-        return returned;
+            getCents.setParameter("id", accountId);
+
+            return getCents.findUnique().getLong("cents");
+        } finally {
+            unlock(locks);
+        }
     }
 
     @Override
-    public synchronized boolean storeCents(GringottsAccount account, long amount) {
-        SqlUpdate up = db.createSqlUpdate("UPDATE gringotts_account SET cents = :cents " +
-                "WHERE owner = :owner and type = :type");
+    public Map<String, Long> retrieveCents(String type) {
+        SqlQuery getCents = db.createSqlQuery("SELECT owner, cents FROM gringotts_account WHERE type = :type");
 
-        up.setParameter("cents", amount);
-        up.setParameter("owner", account.owner.getId());
-        up.setParameter("type", account.owner.getType());
+        getCents.setParameter("type", AccountIds.type(type));
 
-        return up.execute() == 1;
+        Map<String, Long> cents = new HashMap<>();
+
+        for (SqlRow result : getCents.findList()) {
+            cents.put(result.getString("owner"), result.getLong("cents"));
+        }
+
+        return cents;
     }
 
     @Override
-    public synchronized long retrieveCents(GringottsAccount account) {
-        // can this NPE? (probably doesn't)
-        return db.find(EBeanAccount.class)
-                .where()
-                .ieq("type", account.owner.getType())
-                .ieq("owner", account.owner.getId())
-                .findUnique().cents;
+    public Map<String, Long> retrieveCents(String type, Collection<String> owners) {
+        List<String> remaining = new ArrayList<>(owners.size());
+        Map<String, Long> cents = new HashMap<>();
+
+        for (String owner : owners) {
+            remaining.add(AccountIds.owner(type, owner));
+        }
+
+        for (int start = 0; start < remaining.size(); start += BULK_CHUNK_SIZE) {
+            List<String> chunk = remaining.subList(start, Math.min(start + BULK_CHUNK_SIZE, remaining.size()));
+            StringBuilder sql = new StringBuilder("SELECT owner, cents FROM gringotts_account " +
+                    "WHERE type = :type and owner IN (");
+
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? ":o" : ", :o").append(i);
+            }
+
+            SqlQuery getCents = db.createSqlQuery(sql.append(")").toString());
+
+            getCents.setParameter("type", AccountIds.type(type));
+
+            for (int i = 0; i < chunk.size(); i++) {
+                getCents.setParameter("o" + i, chunk.get(i));
+            }
+
+            for (SqlRow result : getCents.findList()) {
+                cents.put(result.getString("owner"), result.getLong("cents"));
+            }
+        }
+
+        return cents;
     }
 
     @Override
-    public synchronized boolean deleteAccount(GringottsAccount acc) {
+    public boolean deleteAccount(GringottsAccount acc) {
         return deleteAccount(acc.owner.getType(), acc.owner.getId());
     }
 
     @Override
-    public synchronized boolean deleteAccount(String type, String account) {
-        SqlUpdate renameAccount = db.createSqlUpdate(
-                "DELETE FROM gringotts_account WHERE owner = :account and type = :type"
-        );
+    public boolean deleteAccount(String type, String account) {
+        List<Lock> locks = lockForWrite(type, account);
+
+        try {
+            SqlUpdate renameAccount = db.createSqlUpdate(
+                    "DELETE FROM gringotts_account WHERE owner = :account and type = :type"
+            );
+
+            renameAccount.setParameter("type", AccountIds.type(type));
+            renameAccount.setParameter("account", AccountIds.owner(type, account));
 
-        renameAccount.setParameter("type", type);
-        renameAccount.setParameter("account", account);
+            chestIndex.removeAccount(AccountIds.type(type), AccountIds.owner(type, account));
+            accountIds.remove(accountKey(type, account));
 
-        return renameAccount.execute() > 0;
+            return renameAccount.execute() > 0;
+        } finally {
+            unlockWrite(locks);
+        }
     }
 
     @Override
-    public synchronized boolean deleteAccountChests(GringottsAccount acc) {
-        return deleteAccountChests(acc.owner.getId());
+    public boolean deleteAccountChests(GringottsAccount acc) {
+        // chests refer to the account's primary key, not its owner id
+        Integer accountId = accountId(acc.owner.getType(), acc.owner.getId());
+
+        return accountId != null && deleteAccountChests(String.valueOf(accountId));
     }
 
     @Override
-    public synchronized boolean deleteAccountChests(String account) {
-        SqlUpdate renameAccount = db.createSqlUpdate(
-                "DELETE FROM gringotts_accountchest WHERE account = :account"
-        );
+    public boolean deleteAccountChests(String account) {
+        writeLock.lock();
+        chestLock.lock();
+
+        try {
+            SqlUpdate renameAccount = db.createSqlUpdate(
+                    "DELETE FROM gringotts_accountchest WHERE account = :account"
+            );
+
+            renameAccount.setParameter("account", account);
 
-        renameAccount.setParameter("account", account);
+            chestIndexLoaded = false;
 
-        return renameAccount.execute() > 0;
+            return renameAccount.execute() > 0;
+        } finally {
+            chestLock.unlock();
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void batch(Runnable batch) {
+        writeLock.lock();
+
+        try {
+            db.beginTransaction();
+
+            try {
+                batch.run();
+
+                db.commitTransaction();
+            } catch (RuntimeException e) {
+                throw new GringottsStorageException("Failed to execute batch.", e);
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
-    public synchronized void shutdown() {
+    public void shutdown() {
         // probably handled by Bukkit?
     }
 }
@@ -0,0 +1,1016 @@
+package org.gestern.gringotts.data;
+
+import com.google.common.util.concurrent.Striped;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Sign;
+import org.gestern.gringotts.AccountChest;
+import org.gestern.gringotts.Gringotts;
+import org.gestern.gringotts.GringottsAccount;
+import org.gestern.gringotts.GringottsStorageException;
+import org.gestern.gringotts.Util;
+import org.gestern.gringotts.accountholder.AccountHolder;
+import org.gestern.gringotts.event.VaultCreationEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import static org.gestern.gringotts.Configuration.CONF;
+
+/**
+ * The Data Access Object provides access to the datastore.
+ * This implementation accesses the Gringotts SQLite database with plain JDBC, using the tables set up by Ebean.
+ * <p>
+ * A small pool of connections is kept open, each with its own cache of prepared statements, and the database runs
+ * in WAL mode, so reads don't wait for writes. Operations always take their connection before any account or chest
+ * lock, and nested operations on the same thread reuse the connection they already hold.
+ */
+public class JdbcDAO implements DAO {
+
+    private static final String FIND_ACCOUNT_ID =
+            "SELECT id FROM gringotts_account WHERE owner = ? AND type = ?";
+    private static final String INSERT_ACCOUNT =
+            "INSERT INTO gringotts_account (type, owner, cents) VALUES (?, ?, ?)";
+    private static final String RENAME_ACCOUNT =
+            "UPDATE gringotts_account SET owner = ? WHERE owner = ? AND type = ?";
+    private static final String DELETE_ACCOUNT =
+            "DELETE FROM gringotts_account WHERE owner = ? AND type = ?";
+    private static final String STORE_CENTS =
+            "UPDATE gringotts_account SET cents = ? WHERE id = ?";
+    private static final String ADD_CENTS =
+            "UPDATE gringotts_account SET cents = cents + ? WHERE id = ? AND cents + ? >= 0";
+    private static final String RETRIEVE_CENTS =
+            "SELECT cents FROM gringotts_account WHERE id = ?";
+    private static final String CENTS_OF_TYPE =
+            "SELECT owner, cents FROM gringotts_account WHERE type = ?";
+    private static final String ALL_ACCOUNTS =
+            "SELECT type, owner FROM gringotts_account";
+    private static final String ACCOUNTS_OF_TYPE =
+            "SELECT owner FROM gringotts_account WHERE type = ?";
+    private static final String INSERT_CHEST =
+            "INSERT INTO gringotts_accountchest (world, x, y, z, account) VALUES (?, ?, ?, ?, ?)";
+    private static final String DELETE_CHEST =
+            "DELETE FROM gringotts_accountchest WHERE world = ? AND x = ? AND y = ? AND z = ?";
+    private static final String DELETE_ACCOUNT_CHESTS =
+            "DELETE FROM gringotts_accountchest WHERE account = ?";
+    private static final String ALL_CHESTS =
+            "SELECT ac.world, ac.x, ac.y, ac.z, a.type, a.owner " +
+                    "FROM gringotts_accountchest ac JOIN gringotts_account a ON ac.account = a.id";
+    private static final String ACCOUNT_CHESTS =
+            "SELECT world, x, y, z FROM gringotts_accountchest WHERE account = ?";
+
+    /**
+     * Number of owners looked up per query in bulk balance reads. Smaller requests are padded, so there is only
+     * one statement to prepare.
+     */
+    private static final int BULK_CHUNK_SIZE = 100;
+
+    /**
+     * Number of rows fetched from the database at a time when enumerating accounts.
+     */
+    private static final int FETCH_SIZE = 1000;
+    private static final String CENTS_OF_OWNERS = centsOfOwners();
+
+    private final Logger log = Gringotts.getInstance().getLogger();
+    private final List<PooledConnection> connections = new ArrayList<>();
+    private final BlockingQueue<PooledConnection> pool;
+    private final ThreadLocal<PooledConnection> current = new ThreadLocal<>();
+    private final ChestIndex chestIndex = new ChestIndex();
+    private volatile boolean chestIndexLoaded = false;
+
+    /**
+     * Primary keys of accounts known to exist, keyed by {@link AccountIds#key(String, String)}.
+     */
+    private final Map<String, Integer> accountIds = new ConcurrentHashMap<>();
+
+    /**
+     * Serializes operations on the same account, while unrelated accounts proceed concurrently.
+     */
+    private final Striped<Lock> accountLocks = Striped.lock(64);
+
+    /**
+     * Serializes writes to the chest table and the chest index.
+     */
+    private final Lock chestLock = new ReentrantLock();
+
+    /**
+     * SQLite allows a single writer. Taken by every write and batch before any other lock, so writes never fail
+     * because another connection wrote since this one started reading, which a busy timeout doesn't retry.
+     */
+    private final Lock writeLock = new ReentrantLock();
+
+    /**
+     * Open a pool of connections to a SQLite database.
+     *
+     * @param url      JDBC url of the database
+     * @param poolSize number of connections to keep open
+     */
+    public JdbcDAO(String url, int poolSize) {
+        int size = Math.max(1, poolSize);
+
+        this.pool = new ArrayBlockingQueue<>(size);
+
+        try {
+            for (int i = 0; i < size; i++) {
+                PooledConnection connection = new PooledConnection(DriverManager.getConnection(url));
+
+                connections.add(connection);
+                pool.add(connection);
+            }
+
+            log.fine("DAO setup successfully.");
+        } catch (SQLException e) {
+            shutdown();
+
+            throw new GringottsStorageException("Failed to initialize database connection.", e);
+        }
+    }
+
+    /**
+     * Operation on a database connection.
+     *
+     * @param <T> result type
+     */
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T call(PooledConnection connection) throws SQLException;
+    }
+
+    /**
+     * Run an operation on a pooled connection. On a thread that already holds a connection, that connection is
+     * used, so nested operations and batches share it.
+     *
+     * @param failure message of the exception thrown when the operation fails
+     * @param call    operation to run
+     * @param <T>     result type
+     * @return result of the operation
+     * @throws GringottsStorageException when the operation failed
+     */
+    private <T> T withConnection(String failure, SqlCall<T> call) {
+        PooledConnection connection = current.get();
+
+        if (connection != null) {
+            try {
+                return call.call(connection);
+            } catch (SQLException e) {
+                throw new GringottsStorageException(failure, e);
+            }
+        }
+
+        try {
+            connection = pool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new GringottsStorageException("Interrupted while waiting for a database connection.", e);
+        }
+
+        current.set(connection);
+
+        try {
+            return call.call(connection);
+        } catch (SQLException e) {
+            throw new GringottsStorageException(failure, e);
+        } finally {
+            current.remove();
+            pool.add(connection);
+        }
+    }
+
+    private static String centsOfOwners() {
+        StringBuilder sql = new StringBuilder("SELECT owner, cents FROM gringotts_account WHERE type = ? AND owner IN (");
+
+        for (int i = 0; i < BULK_CHUNK_SIZE; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+
+        return sql.append(")").toString();
+    }
+
+    private static String accountKey(String type, String owner) {
+        return AccountIds.key(type, owner);
+    }
+
+    /**
+     * Acquire the locks of the given accounts, in a globally consistent order.
+     *
+     * @param type   account type
+     * @param owners ids of the accounts
+     * @return the acquired locks, to be released with {@link #unlock(List)}
+     */
+    private List<Lock> lockAccounts(String type, String... owners) {
+        List<String> keys = new ArrayList<>(owners.length);
+
+        for (String owner : owners) {
+            keys.add(accountKey(type, owner));
+        }
+
+        List<Lock> locks = new ArrayList<>(owners.length);
+
+        for (Lock lock : accountLocks.bulkGet(keys)) {
+            lock.lock();
+            locks.add(lock);
+        }
+
+        return locks;
+    }
+
+    private static void unlock(List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    /**
+     * Acquire the write lock, then the locks of the given accounts.
+     *
+     * @param type   account type
+     * @param owners ids of the accounts
+     * @return the acquired account locks, to be released with {@link #unlockWrite(List)}
+     */
+    private List<Lock> lockForWrite(String type, String... owners) {
+        writeLock.lock();
+
+        try {
+            return lockAccounts(type, owners);
+        } catch (RuntimeException e) {
+            writeLock.unlock();
+
+            throw e;
+        }
+    }
+
+    private void unlockWrite(List<Lock> locks) {
+        unlock(locks);
+        writeLock.unlock();
+    }
+
+    /**
+     * Primary key of an account, loaded from storage on first use. Must be called with a connection held.
+     *
+     * @param connection connection held by the caller
+     * @param type       account type
+     * @param owner      account owner id
+     * @return the primary key, or null if the account does not exist
+     */
+    private Integer accountId(PooledConnection connection, String type, String owner) throws SQLException {
+        String key = accountKey(type, owner);
+        Integer id = accountIds.get(key);
+
+        if (id != null) {
+            return id;
+        }
+
+        // under the account lock, so a concurrent delete or rename can't be overwritten with a stale id
+        List<Lock> locks = lockAccounts(type, owner);
+
+        try {
+            PreparedStatement findAccount = connection.prepare(FIND_ACCOUNT_ID);
+
+            findAccount.setString(1, AccountIds.owner(type, owner));
+            findAccount.setString(2, AccountIds.type(type));
+
+            try (ResultSet result = findAccount.executeQuery()) {
+                if (!result.next()) {
+                    return null;
+                }
+
+                id = result.getInt("id");
+            }
+
+            accountIds.put(key, id);
+
+            return id;
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    @Override
+    public boolean storeAccountChest(AccountChest chest) {
+        return withConnection("Failed to save account chest: " + chest, connection -> {
+            Integer accountId = accountId(connection, chest.account.owner.getType(), chest.account.owner.getId());
+
+            if (accountId == null) {
+                return false;
+            }
+
+            writeLock.lock();
+            chestLock.lock();
+
+            try {
+                PreparedStatement storeChest = connection.prepare(INSERT_CHEST);
+                Sign mark = chest.sign;
+
+                storeChest.setString(1, mark.getWorld().getName());
+                storeChest.setInt(2, mark.getX());
+                storeChest.setInt(3, mark.getY());
+                storeChest.setInt(4, mark.getZ());
+                storeChest.setInt(5, accountId);
+
+                if (storeChest.executeUpdate() > 0) {
+                    chestIndex.add(
+                            mark.getWorld().getName(),
+                            mark.getX(),
+                            mark.getY(),
+                            mark.getZ(),
+                            AccountIds.type(chest.account.owner.getType()),
+                            AccountIds.owner(chest.account.owner.getType(), chest.account.owner.getId())
+                    );
+
+                    return true;
+                }
+
+                return false;
+            } finally {
+                chestLock.unlock();
+                writeLock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public boolean deleteAccountChest(AccountChest chest) {
+        Sign mark = chest.sign;
+
+        return deleteAccountChest(mark.getWorld().getName(), mark.getX(), mark.getY(), mark.getZ());
+    }
+
+    @Override
+    public boolean deleteAccountChest(String world, int x, int y, int z) {
+        return withConnection("Failed to delete account chest.", connection -> {
+            writeLock.lock();
+            chestLock.lock();
+
+            try {
+                PreparedStatement deleteChest = connection.prepare(DELETE_CHEST);
+
+                deleteChest.setString(1, world);
+                deleteChest.setInt(2, x);
+                deleteChest.setInt(3, y);
+                deleteChest.setInt(4, z);
+
+                chestIndex.remove(world, x, y, z);
+
+                return deleteChest.executeUpdate() > 0;
+            } finally {
+                chestLock.unlock();
+                writeLock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public boolean storeAccount(GringottsAccount account) {
+        AccountHolder owner = account.owner;
+
+        return withConnection("Failed to save account: " + owner, connection -> {
+            List<Lock> locks = lockForWrite(
+                    owner.getType(),
+                    owner.getId(),
+                    owner.getType() + "-" + owner.getName()
+            );
+
+            try {
+                if (accountId(connection, owner.getType(), owner.getId()) != null) {
+                    return false;
+                }
+
+                if (Objects.equals(owner.getType(), "town") || Objects.equals(owner.getType(), "nation")) {
+                    String legacyId = owner.getType() + "-" + owner.getName();
+
+                    if (accountId(connection, owner.getType(), legacyId) != null) {
+                        renameAccount(owner.getType(), legacyId, owner.getId());
+
+                        return false;
+                    }
+                }
+
+                double startValue = 0;
+
+                switch (owner.getType()) {
+                    case "player":
+                        startValue = CONF.startBalancePlayer;
+                        break;
+                    case "faction":
+                        startValue = CONF.startBalanceFaction;
+                        break;
+                    case "town":
+                        startValue = CONF.startBalanceTown;
+                        break;
+                    case "nation":
+                        startValue = CONF.startBalanceNation;
+                        break;
+                }
+
+                PreparedStatement storeAccount = connection.prepare(INSERT_ACCOUNT);
+
+                storeAccount.setString(1, AccountIds.type(owner.getType()));
+                storeAccount.setString(2, AccountIds.owner(owner.getType(), owner.getId()));
+                storeAccount.setLong(3, CONF.getCurrency().getCentValue(startValue));
+
+                return storeAccount.executeUpdate() > 0;
+            } finally {
+                unlockWrite(locks);
+            }
+        });
+    }
+
+    @Override
+    public boolean hasAccount(AccountHolder accountHolder) {
+        return withConnection(
+                "Failed to look up account: " + accountHolder,
+                connection -> accountId(connection, accountHolder.getType(), accountHolder.getId()) != null
+        );
+    }
+
+    @Override
+    public boolean renameAccount(String type, @NotNull AccountHolder holder, String newName) {
+        return renameAccount(type, holder.getId(), newName);
+    }
+
+    @Override
+    public boolean renameAccount(String type, String oldName, String newName) {
+        return withConnection("Failed to rename account " + type + ":" + oldName, connection -> {
+            List<Lock> locks = lockForWrite(type, oldName, newName);
+
+            try {
+                PreparedStatement renameAccount = connection.prepare(RENAME_ACCOUNT);
+
+                renameAccount.setString(1, AccountIds.owner(type, newName));
+                renameAccount.setString(2, AccountIds.owner(type, oldName));
+                renameAccount.setString(3, AccountIds.type(type));
+
+                boolean renamed = renameAccount.executeUpdate() > 0;
+
+                accountIds.remove(accountKey(type, oldName));
+                accountIds.remove(accountKey(type, newName));
+
+                // owners of indexed chests changed, rebuild the index when it is needed next.
+                // Under the chest lock, so an index loaded before the update can't be marked loaded afterwards.
+                chestLock.lock();
+
+                try {
+                    chestIndexLoaded = false;
+                } finally {
+                    chestLock.unlock();
+                }
+
+                return renamed;
+            } finally {
+                unlockWrite(locks);
+            }
+        });
+    }
+
+    @Override
+    public List<AccountChest> retrieveChests() {
+        List<ChestIndex.Entry> stored = withConnection("Failed to retrieve account chests.", this::readChests);
+        List<AccountChest> chests = new LinkedList<>();
+
+        for (ChestIndex.Entry entry : stored) {
+            AccountChest chest = resolveChest(entry.world, entry.x, entry.y, entry.z, entry.type, entry.owner);
+
+            if (chest != null) {
+                chests.add(chest);
+            }
+        }
+
+        return chests;
+    }
+
+    /**
+     * Read all stored chest locations with their owners.
+     *
+     * @param connection connection held by the caller
+     * @return stored chests
+     */
+    private List<ChestIndex.Entry> readChests(PooledConnection connection) throws SQLException {
+        List<ChestIndex.Entry> entries = new ArrayList<>();
+
+        try (ResultSet result = connection.prepare(ALL_CHESTS).executeQuery()) {
+            while (result.next()) {
+                entries.add(new ChestIndex.Entry(
+                        result.getString("world"),
+                        result.getInt("x"),
+                        result.getInt("y"),
+                        result.getInt("z"),
+                        result.getString("type"),
+                        result.getString("owner")
+                ));
+            }
+        }
+
+        return entries;
+    }
+
+    @Override
+    public List<AccountChest> retrieveChestsNear(Location location, int radius) {
+        World world = location.getWorld();
+
+        if (world == null) {
+            return new LinkedList<>();
+        }
+
+        ensureChestIndex();
+
+        List<AccountChest> chests = new LinkedList<>();
+
+        for (ChestIndex.Entry entry : chestIndex.near(
+                world.getName(),
+                location.getBlockX(),
+                location.getBlockZ(),
+                radius
+        )) {
+            AccountChest chest = resolveChest(entry.world, entry.x, entry.y, entry.z, entry.type, entry.owner);
+
+            if (chest != null) {
+                chests.add(chest);
+            }
+        }
+
+        return chests;
+    }
+
+    @Override
+    public List<ChestIndex.Entry> retrieveChestLocations() {
+        ensureChestIndex();
+
+        return chestIndex.entries();
+    }
+
+    @Override
+    public List<ChestIndex.Entry> retrieveChestLocations(AccountHolder owner) {
+        ensureChestIndex();
+
+        return chestIndex.entries(owner.getType(), owner.getId());
+    }
+
+    /**
+     * Load the chest index if it isn't loaded yet.
+     */
+    private void ensureChestIndex() {
+        if (chestIndexLoaded) {
+            return;
+        }
+
+        withConnection("Failed to load account chests.", connection -> {
+            chestLock.lock();
+
+            try {
+                if (!chestIndexLoaded) {
+                    chestIndex.clear();
+
+                    for (ChestIndex.Entry entry : readChests(connection)) {
+                        chestIndex.add(entry.world, entry.x, entry.y, entry.z, entry.type, entry.owner);
+                    }
+
+                    chestIndexLoaded = true;
+                }
+
+                return null;
+            } finally {
+                chestLock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Create the account chest for a stored chest location.
+     * Invalid chests are skipped and left in storage for the vault sweeper to remove.
+     *
+     * @return the account chest, or null if the location does not hold a valid account chest
+     */
+    private AccountChest resolveChest(String worldName, int x, int y, int z, String type, String ownerId) {
+        World world = Bukkit.getWorld(worldName);
+
+        if (world == null) {
+            return null; // skip vaults in non-existing worlds
+        }
+
+        Optional<Sign> optionalSign = Util.getBlockStateAs(world.getBlockAt(x, y, z), Sign.class);
+
+        if (!optionalSign.isPresent()) {
+            return null;
+        }
+
+        AccountHolder owner = Gringotts.getInstance().getAccountHolderFactory().get(type, ownerId);
+
+        if (owner == null) {
+            return null;
+        }
+
+        return new AccountChest(optionalSign.get(), new GringottsAccount(owner));
+    }
+
+    @Override
+    public List<AccountChest> retrieveChests(GringottsAccount account) {
+        List<int[]> locations = new ArrayList<>();
+        List<String> worlds = new ArrayList<>();
+
+        withConnection("Failed to retrieve account chests of " + account.owner, connection -> {
+            Integer accountId = accountId(connection, account.owner.getType(), account.owner.getId());
+
+            if (accountId == null) {
+                return null;
+            }
+
+            PreparedStatement getChests = connection.prepare(ACCOUNT_CHESTS);
+
+            getChests.setInt(1, accountId);
+
+            try (ResultSet result = getChests.executeQuery()) {
+                while (result.next()) {
+                    worlds.add(result.getString("world"));
+                    locations.add(new int[]{result.getInt("x"), result.getInt("y"), result.getInt("z")});
+                }
+            }
+
+            return null;
+        });
+
+        List<AccountChest> chests = new LinkedList<>();
+
+        for (int i = 0; i < locations.size(); i++) {
+            String worldName = worlds.get(i);
+            int[] location = locations.get(i);
+            World world = Bukkit.getWorld(worldName);
+
+            if (world == null) {
+                continue; // skip chest if it is in non-existent world
+            }
+
+            Optional<Sign> optionalSign = Util.getBlockStateAs(
+                    world.getBlockAt(location[0], location[1], location[2]),
+                    Sign.class
+            );
+
+            // chests without a sign are left for the vault sweeper to remove
+            optionalSign.ifPresent(sign -> chests.add(new AccountChest(sign, account)));
+        }
+
+        return chests;
+    }
+
+    @Override
+    public void forEachAccount(Consumer<String> action) {
+        withConnection("Failed to retrieve accounts.", connection -> {
+            PreparedStatement getAccounts = connection.prepare(ALL_ACCOUNTS);
+
+            getAccounts.setFetchSize(FETCH_SIZE);
+
+            try (ResultSet result = getAccounts.executeQuery()) {
+                while (result.next()) {
+                    String type = result.getString("type");
+                    String owner = result.getString("owner");
+
+                    if (type != null && owner != null) {
+                        action.accept(type + ":" + owner);
+                    }
+                }
+            }
+
+            return null;
+        });
+    }
+
+    @Override
+    public void forEachAccount(VaultCreationEvent.Type type, Consumer<String> action) {
+        String typeId = type.getId();
+
+        withConnection("Failed to retrieve accounts of type " + typeId, connection -> {
+            PreparedStatement getAccounts = connection.prepare(ACCOUNTS_OF_TYPE);
+
+            getAccounts.setString(1, AccountIds.type(typeId));
+            getAccounts.setFetchSize(FETCH_SIZE);
+
+            try (ResultSet result = getAccounts.executeQuery()) {
+                while (result.next()) {
+                    String owner = result.getString("owner");
+
+                    if (owner != null) {
+                        action.accept(typeId + ":" + owner);
+                    }
+                }
+            }
+
+            return null;
+        });
+    }
+
+    @Override
+    public boolean storeCents(GringottsAccount account, long amount) {
+        return storeCents(account.owner.getType(), account.owner.getId(), amount);
+    }
+
+    @Override
+    public boolean storeCents(String type, String owner, long amount) {
+        return withConnection("Failed to store balance of " + type + ":" + owner, connection -> {
+            List<Lock> locks = lockForWrite(type, owner);
+
+            try {
+                Integer accountId = accountId(connection, type, owner);
+
+                if (accountId == null) {
+                    return false;
+                }
+
+                PreparedStatement up = connection.prepare(STORE_CENTS);
+
+                up.setLong(1, amount);
+                up.setInt(2, accountId);
+
+                return up.executeUpdate() == 1;
+            } finally {
+                unlockWrite(locks);
+            }
+        });
+    }
+
+    @Override
+    public long addCents(GringottsAccount account, long delta) {
+        String type = account.owner.getType();
+        String owner = account.owner.getId();
+
+        return withConnection("Failed to change balance of " + account.owner, connection -> {
+            List<Lock> locks = lockForWrite(type, owner);
+
+            try {
+                Integer accountId = accountId(connection, type, owner);
+
+                if (accountId == null) {
+                    return -1L;
+                }
+
+                PreparedStatement up = connection.prepare(ADD_CENTS);
+
+                up.setLong(1, delta);
+                up.setInt(2, accountId);
+                up.setLong(3, delta);
+
+                if (up.executeUpdate() != 1) {
+                    return -1L;
+                }
+
+                return readCents(connection, accountId);
+            } finally {
+                unlockWrite(locks);
+            }
+        });
+    }
+
+    @Override
+    public long retrieveCents(GringottsAccount account) {
+        return withConnection("Failed to retrieve balance of " + account.owner, connection -> {
+            List<Lock> locks = lockAccounts(account.owner.getType(), account.owner.getId());
+
+            try {
+                Integer accountId = accountId(connection, account.owner.getType(), account.owner.getId());
+
+                if (accountId == null) {
+                    throw new GringottsStorageException("Account does not exist: " + account.owner);
+                }
+
+                return readCents(connection, accountId);
+            } finally {
+                unlock(locks);
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Long> retrieveCents(String type) {
+        return withConnection("Failed to retrieve balances of type " + type, connection -> {
+            PreparedStatement getCents = connection.prepare(CENTS_OF_TYPE);
+            Map<String, Long> cents = new HashMap<>();
+
+            getCents.setString(1, AccountIds.type(type));
+
+            try (ResultSet result = getCents.executeQuery()) {
+                while (result.next()) {
+                    cents.put(result.getString("owner"), result.getLong("cents"));
+                }
+            }
+
+            return cents;
+        });
+    }
+
+    @Override
+    public Map<String, Long> retrieveCents(String type, Collection<String> owners) {
+        List<String> remaining = new ArrayList<>(owners.size());
+
+        for (String owner : owners) {
+            remaining.add(AccountIds.owner(type, owner));
+        }
+
+        if (remaining.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        return withConnection("Failed to retrieve balances of type " + type, connection -> {
+            PreparedStatement getCents = connection.prepare(CENTS_OF_OWNERS);
+            Map<String, Long> cents = new HashMap<>();
+
+            getCents.setString(1, AccountIds.type(type));
+
+            for (int start = 0; start < remaining.size(); start += BULK_CHUNK_SIZE) {
+                for (int i = 0; i < BULK_CHUNK_SIZE; i++) {
+                    // pad with the last owner of the chunk, which matches the same row again
+                    int index = Math.min(start + i, remaining.size() - 1);
+
+                    getCents.setString(i + 2, remaining.get(index));
+                }
+
+                try (ResultSet result = getCents.executeQuery()) {
+                    while (result.next()) {
+                        cents.put(result.getString("owner"), result.getLong("cents"));
+                    }
+                }
+            }
+
+            return cents;
+        });
+    }
+
+    private long readCents(PooledConnection connection, int accountId) throws SQLException {
+        PreparedStatement getCents = connection.prepare(RETRIEVE_CENTS);
+
+        getCents.setInt(1, accountId);
+
+        try (ResultSet result = getCents.executeQuery()) {
+            if (!result.next()) {
+                throw new GringottsStorageException("Account does not exist: " + accountId);
+            }
+
+            return result.getLong("cents");
+        }
+    }
+
+    @Override
+    public boolean deleteAccount(GringottsAccount acc) {
+        return deleteAccount(acc.owner.getType(), acc.owner.getId());
+    }
+
+    @Override
+    public boolean deleteAccount(String type, String account) {
+        return withConnection("Failed to delete account " + type + ":" + account, connection -> {
+            List<Lock> locks = lockForWrite(type, account);
+
+            try {
+                PreparedStatement deleteAccount = connection.prepare(DELETE_ACCOUNT);
+
+                deleteAccount.setString(1, AccountIds.owner(type, account));
+                deleteAccount.setString(2, AccountIds.type(type));
+
+                boolean deleted = deleteAccount.executeUpdate() > 0;
+
+                accountIds.remove(accountKey(type, account));
+
+                chestLock.lock();
+
+                try {
+                    chestIndex.removeAccount(AccountIds.type(type), AccountIds.owner(type, account));
+                } finally {
+                    chestLock.unlock();
+                }
+
+                return deleted;
+            } finally {
+                unlockWrite(locks);
+            }
+        });
+    }
+
+    @Override
+    public boolean deleteAccountChests(GringottsAccount acc) {
+        // chests refer to the account's primary key, not its owner id
+        Integer accountId = withConnection(
+                "Failed to look up account: " + acc.owner,
+                connection -> accountId(connection, acc.owner.getType(), acc.owner.getId())
+        );
+
+        return accountId != null && deleteAccountChests(String.valueOf(accountId));
+    }
+
+    @Override
+    public boolean deleteAccountChests(String account) {
+        return withConnection("Failed to delete chests of account " + account, connection -> {
+            writeLock.lock();
+            chestLock.lock();
+
+            try {
+                PreparedStatement deleteChests = connection.prepare(DELETE_ACCOUNT_CHESTS);
+
+                deleteChests.setString(1, account);
+
+                chestIndexLoaded = false;
+
+                return deleteChests.executeUpdate() > 0;
+            } finally {
+                chestLock.unlock();
+                writeLock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public void batch(Runnable batch) {
+        withConnection("Failed to execute batch.", connection -> {
+            writeLock.lock();
+
+            try {
+                connection.connection.setAutoCommit(false);
+
+                try {
+                    batch.run();
+
+                    connection.connection.commit();
+                } catch (RuntimeException e) {
+                    connection.connection.rollback();
+
+                    throw new GringottsStorageException("Failed to execute batch.", e);
+                } finally {
+                    connection.connection.setAutoCommit(true);
+                }
+
+                return null;
+            } finally {
+                writeLock.unlock();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        for (PooledConnection connection : connections) {
+            connection.close();
+        }
+
+        connections.clear();
+        pool.clear();
+    }
+
+    /**
+     * A database connection with its cache of prepared statements. Only used by one thread at a time.
+     */
+    private final class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private PooledConnection(Connection connection) throws SQLException {
+            this.connection = connection;
+
+            try (Statement setup = connection.createStatement()) {
+                // readers don't block the writer and vice versa. NORMAL is safe with WAL, only a power loss may
+                // lose the latest transactions
+                setup.execute("PRAGMA journal_mode = WAL");
+                setup.execute("PRAGMA synchronous = NORMAL");
+                setup.execute("PRAGMA busy_timeout = 5000");
+            }
+        }
+
+        /**
+         * Get the prepared statement for a query, preparing it on first use.
+         *
+         * @param sql query
+         * @return prepared statement, with parameters of earlier uses still set
+         */
+        private PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+
+            return statement;
+        }
+
+        private void close() {
+            try {
+                for (PreparedStatement statement : statements.values()) {
+                    statement.close();
+                }
+
+                connection.close();
+            } catch (SQLException e) {
+                log.warning("Failed to close database connection: " + e.getMessage());
+            }
+        }
+    }
+}
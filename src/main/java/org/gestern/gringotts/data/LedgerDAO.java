@@ -0,0 +1,857 @@
+package org.gestern.gringotts.data;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.scheduler.BukkitTask;
+import org.gestern.gringotts.AccountChest;
+import org.gestern.gringotts.Gringotts;
+import org.gestern.gringotts.GringottsAccount;
+import org.gestern.gringotts.GringottsStorageException;
+import org.gestern.gringotts.accountholder.AccountHolder;
+import org.gestern.gringotts.event.VaultCreationEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind ledger for virtual balances.
+ * <p>
+ * Keeps the cents of accounts in use in memory and serves reads from there. Changed balances are written to the
+ * backing DAO in batches, periodically and on shutdown. Balances that are stored and were not used since the previous
+ * flush are dropped after a flush, and read from the backend again when needed. Every change is also appended to a redo log
+ * before it becomes visible, so that changes not yet written to the database are recovered on the next startup.
+ * All other operations are passed through to the backing DAO.
+ * <p>
+ * Batches are transactional for virtual balances as well: withdrawals are applied right away and reverted if the
+ * batch fails, deposits are only applied once the rest of the batch succeeded. So money credited in a failing batch
+ * can never be spent elsewhere before it is taken back.
+ * <p>
+ * The redo log is flushed to the operating system after every change, but not forced to disk. It survives a crash of
+ * the server process, but changes since the last flush to the database may be lost if the whole machine goes down.
+ */
+public class LedgerDAO implements DAO {
+
+    private static final String REDO_SUFFIX = ".redo";
+
+    private final Logger log;
+    private final DAO backend;
+    private final File redoFolder;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Changes of the batch running on the current thread, if any.
+     */
+    private final ThreadLocal<Batch> batches = new ThreadLocal<>();
+
+    /**
+     * Guards modification of entries and the redo log, so that the log order matches the order of changes.
+     */
+    private final Object redoLock = new Object();
+    private BufferedWriter redoWriter;
+    private long redoGeneration;
+
+    private BukkitTask flushTask;
+
+    /**
+     * Create a ledger in front of a backing DAO.
+     * Changes left over in the redo log from a previous run are written to the backend immediately.
+     *
+     * @param backend       the DAO to write balances to
+     * @param flushInterval ticks between writes to the backend. Values less than 1 write only on shutdown.
+     */
+    public LedgerDAO(DAO backend, long flushInterval) {
+        this(
+                backend,
+                new File(Gringotts.getInstance().getDataFolder(), "ledger"),
+                Gringotts.getInstance().getLogger()
+        );
+
+        if (flushInterval > 0) {
+            flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(
+                    Gringotts.getInstance(),
+                    this::flush,
+                    flushInterval,
+                    flushInterval
+            );
+        }
+    }
+
+    /**
+     * Create a ledger keeping its redo log in the given folder, which is only written to the backend by
+     * {@link #flush()} and on shutdown.
+     *
+     * @param backend    the DAO to write balances to
+     * @param redoFolder folder holding the redo log
+     * @param log        logger for problems with the redo log
+     */
+    LedgerDAO(DAO backend, File redoFolder, Logger log) {
+        this.backend = backend;
+        this.redoFolder = redoFolder;
+        this.log = log;
+
+        //noinspection ResultOfMethodCallIgnored
+        redoFolder.mkdirs();
+
+        recover();
+    }
+
+    private static String key(String type, String owner) {
+        return AccountIds.key(type, owner);
+    }
+
+    /**
+     * Redo log files currently on disk, oldest first.
+     */
+    private List<File> redoFiles() {
+        File[] files = redoFolder.listFiles((dir, name) -> name.endsWith(REDO_SUFFIX));
+
+        if (files == null) {
+            return new ArrayList<>();
+        }
+
+        List<File> sorted = new ArrayList<>(Arrays.asList(files));
+        sorted.sort(Comparator.comparingLong(LedgerDAO::generationOf));
+
+        return sorted;
+    }
+
+    private static long generationOf(File file) {
+        String name = file.getName();
+
+        try {
+            return Long.parseLong(name.substring(0, name.length() - REDO_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Replay leftover redo logs into the backend and start a fresh log.
+     */
+    private void recover() {
+        List<File> files = redoFiles();
+        Map<String, String[]> latest = new LinkedHashMap<>();
+
+        for (File file : files) {
+            redoGeneration = Math.max(redoGeneration, generationOf(file));
+
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split("\t");
+
+                    // a torn last line from a crash is simply ignored
+                    if (parts.length == 3) {
+                        latest.put(key(parts[0], parts[1]), parts);
+                    }
+                }
+            } catch (IOException e) {
+                throw new GringottsStorageException("Failed to read ledger redo log " + file, e);
+            }
+        }
+
+        if (!latest.isEmpty()) {
+            log.info("Recovering " + latest.size() + " virtual balances from ledger redo log.");
+
+            backend.batch(() -> {
+                for (String[] parts : latest.values()) {
+                    try {
+                        backend.storeCents(parts[0], parts[1], Long.parseLong(parts[2]));
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            });
+        }
+
+        for (File file : files) {
+            if (!file.delete()) {
+                log.warning("Unable to delete ledger redo log " + file);
+            }
+        }
+
+        synchronized (redoLock) {
+            openRedoLog();
+        }
+    }
+
+    /**
+     * Start a new redo log generation. Must be called while holding the redo lock.
+     */
+    private void openRedoLog() {
+        closeRedoLog();
+
+        File file = new File(redoFolder, ++redoGeneration + REDO_SUFFIX);
+
+        try {
+            redoWriter = Files.newBufferedWriter(
+                    file.toPath(),
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND
+            );
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Unable to open ledger redo log. Balances will be written through.", e);
+
+            redoWriter = null;
+        }
+    }
+
+    /**
+     * Close the current redo log generation. Must be called while holding the redo lock.
+     */
+    private void closeRedoLog() {
+        if (redoWriter == null) {
+            return;
+        }
+
+        try {
+            redoWriter.close();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to close ledger redo log.", e);
+        }
+
+        redoWriter = null;
+    }
+
+    /**
+     * Append a change to the redo log. Must be called while holding the redo lock.
+     *
+     * @return true if the change was logged, false if it has to be written through to the backend
+     */
+    private boolean appendRedo(Entry entry, long cents) {
+        if (redoWriter == null) {
+            return false;
+        }
+
+        try {
+            redoWriter.write(entry.type + "\t" + entry.owner + "\t" + cents);
+            redoWriter.newLine();
+            redoWriter.flush();
+
+            return true;
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Unable to write ledger redo log. Balances will be written through.", e);
+
+            closeRedoLog();
+
+            return false;
+        }
+    }
+
+    /**
+     * Get the ledger entry of an account, creating it if necessary, and mark it as used.
+     */
+    private Entry entry(String type, String owner) {
+        Entry entry = entries.computeIfAbsent(key(type, owner), k -> new Entry(type, owner));
+
+        entry.used = true;
+
+        return entry;
+    }
+
+    /**
+     * Get the ledger entry of an account, loading its balance from the backend if necessary.
+     */
+    private Entry loaded(GringottsAccount account) {
+        Entry entry = entry(account.owner.getType(), account.owner.getId());
+
+        synchronized (entry) {
+            if (!entry.loaded) {
+                entry.cents = backend.retrieveCents(account);
+                entry.loaded = true;
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Run an operation on a ledger entry while holding its monitor. The entry is looked up again if it was evicted in
+     * the meantime, so no change is made to an entry that is no longer part of the ledger.
+     *
+     * @param lookup    gets the entry
+     * @param operation operation on the entry
+     * @return result of the operation
+     */
+    private static <T> T locked(Supplier<Entry> lookup, Function<Entry, T> operation) {
+        while (true) {
+            Entry entry = lookup.get();
+
+            synchronized (entry) {
+                if (!entry.evicted) {
+                    return operation.apply(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write all changed balances to the backend in a single batch, then forget the balances that were not used since
+     * the previous flush. Redo logs are removed once their changes are safely stored.
+     * Flushes don't overlap, so no entry is forgotten while its balance is still being written.
+     */
+    public synchronized void flush() {
+        List<Entry> dirty = new ArrayList<>();
+        List<Long> amounts = new ArrayList<>();
+        long flushedGeneration;
+
+        synchronized (redoLock) {
+            for (Entry entry : entries.values()) {
+                if (entry.dirty) {
+                    entry.dirty = false;
+                    dirty.add(entry);
+                    amounts.add(entry.cents);
+                }
+            }
+
+            if (dirty.isEmpty()) {
+                evictIdle();
+
+                return;
+            }
+
+            // changes from now on go into a new log, which survives this flush
+            flushedGeneration = redoGeneration;
+            openRedoLog();
+        }
+
+        try {
+            backend.batch(() -> {
+                for (int i = 0; i < dirty.size(); i++) {
+                    Entry entry = dirty.get(i);
+
+                    backend.storeCents(entry.type, entry.owner, amounts.get(i));
+                }
+            });
+        } catch (RuntimeException e) {
+            log.log(Level.SEVERE, "Failed to write " + dirty.size() + " virtual balances. Will retry.", e);
+
+            for (Entry entry : dirty) {
+                entry.dirty = true;
+            }
+
+            return;
+        }
+
+        for (File file : redoFiles()) {
+            if (generationOf(file) <= flushedGeneration && !file.delete()) {
+                log.warning("Unable to delete ledger redo log " + file);
+            }
+        }
+
+        evictIdle();
+    }
+
+    /**
+     * Forget the entries whose balance is stored and which were not used since the previous flush, so the ledger
+     * only holds accounts in use. Entries used since then are kept until the next flush.
+     */
+    private void evictIdle() {
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                if (entry.dirty || entry.batches > 0) {
+                    continue;
+                }
+
+                if (entry.used) {
+                    entry.used = false;
+                } else {
+                    entry.evicted = true;
+                    entries.remove(key(entry.type, entry.owner), entry);
+                }
+            }
+        }
+    }
+
+    @Override
+    public long retrieveCents(GringottsAccount account) {
+        return locked(() -> loaded(account), entry -> entry.cents);
+    }
+
+    @Override
+    public Map<String, Long> retrieveCents(String type) {
+        Map<String, Long> cents = backend.retrieveCents(type);
+
+        for (Entry entry : entries.values()) {
+            if (AccountIds.type(entry.type).equals(AccountIds.type(type))) {
+                overlay(cents, entry);
+            }
+        }
+
+        return cents;
+    }
+
+    @Override
+    public Map<String, Long> retrieveCents(String type, Collection<String> owners) {
+        Map<String, Long> cents = backend.retrieveCents(type, owners);
+
+        for (Entry entry : entries.values()) {
+            if (AccountIds.type(entry.type).equals(AccountIds.type(type))) {
+                // the backend only returns requested owners, so this skips the others
+                overlay(cents, entry);
+            }
+        }
+
+        return cents;
+    }
+
+    /**
+     * Replace a stored balance with the ledger's newer value, if it has loaded one.
+     */
+    private static void overlay(Map<String, Long> cents, Entry entry) {
+        synchronized (entry) {
+            String owner = AccountIds.owner(entry.type, entry.owner);
+
+            // accounts the backend doesn't know were deleted
+            if (entry.loaded && cents.containsKey(owner)) {
+                cents.put(owner, entry.cents);
+            }
+        }
+    }
+
+    /**
+     * Store a new balance of an entry, and only then make it visible. The balance is appended to the redo log, or
+     * written through to the backend if that fails. Must be called while holding the monitor of the entry.
+     *
+     * @return true if the balance was stored, false if the entry was left unchanged
+     */
+    private boolean persist(Entry entry, long cents) {
+        synchronized (redoLock) {
+            if (appendRedo(entry, cents)) {
+                entry.cents = cents;
+                entry.dirty = true;
+
+                return true;
+            }
+        }
+
+        if (!backend.storeCents(entry.type, entry.owner, cents)) {
+            return false;
+        }
+
+        entry.cents = cents;
+
+        // a flush running right now may have captured the previous balance and write it after this one
+        entry.dirty = true;
+
+        return true;
+    }
+
+    @Override
+    public boolean storeCents(GringottsAccount account, long amount) {
+        return locked(() -> loaded(account), entry -> {
+            Batch batch = batches.get();
+
+            if (batch != null) {
+                batch.stage(entry, amount - entry.cents - batch.staged(entry));
+
+                return true;
+            }
+
+            return persist(entry, amount);
+        });
+    }
+
+    @Override
+    public long addCents(GringottsAccount account, long delta) {
+        return locked(() -> loaded(account), entry -> {
+            Batch batch = batches.get();
+
+            if (batch == null) {
+                long cents = entry.cents + delta;
+
+                if (cents < 0) {
+                    return -1L;
+                }
+
+                return persist(entry, cents) ? cents : -1;
+            }
+
+            long staged = batch.staged(entry);
+            long cents = entry.cents + staged + delta;
+
+            if (cents < 0) {
+                return -1L;
+            }
+
+            // a withdrawal covered by the current balance is applied right away, everything else waits for the
+            // batch to succeed. changes of an entry stay in order.
+            if (delta < 0 && !batch.hasStaged(entry)) {
+                if (!persist(entry, entry.cents + delta)) {
+                    return -1L;
+                }
+
+                batch.applied(entry, delta);
+
+                return cents;
+            }
+
+            batch.stage(entry, delta);
+
+            return cents;
+        });
+    }
+
+    @Override
+    public boolean storeCents(String type, String owner, long amount) {
+        return locked(() -> entry(type, owner), entry -> {
+            Batch batch = batches.get();
+
+            // the whole balance is replaced, so there is nothing to load first
+            if (batch != null && entry.loaded) {
+                batch.stage(entry, amount - entry.cents - batch.staged(entry));
+
+                return true;
+            }
+
+            if (!persist(entry, amount)) {
+                return false;
+            }
+
+            entry.loaded = true;
+
+            return true;
+        });
+    }
+
+    /**
+     * Write a cached balance through to the backend and forget it, for example before the account key changes.
+     */
+    private void evict(String type, String owner) {
+        Entry entry = entries.remove(key(type, owner));
+
+        if (entry != null) {
+            synchronized (entry) {
+                entry.evicted = true;
+
+                if (entry.dirty) {
+                    backend.storeCents(type, owner, entry.cents);
+                }
+            }
+        }
+    }
+
+    /**
+     * Run a batch, applying its deposits only when it succeeds and reverting its withdrawals when it fails. A batch
+     * started within a batch is part of the outer one.
+     *
+     * @param batch the storage operations to run
+     * @throws GringottsStorageException when the batch failed
+     */
+    @Override
+    public void batch(Runnable batch) {
+        if (batches.get() != null) {
+            batch.run();
+
+            return;
+        }
+
+        Batch changes = new Batch();
+
+        batches.set(changes);
+
+        try {
+            backend.batch(() -> {
+                batch.run();
+                changes.commit();
+            });
+        } catch (RuntimeException e) {
+            changes.rollback();
+
+            throw e;
+        } finally {
+            changes.release();
+            batches.remove();
+        }
+    }
+
+    @Override
+    public boolean storeAccountChest(AccountChest chest) {
+        return backend.storeAccountChest(chest);
+    }
+
+    @Override
+    public boolean deleteAccountChest(AccountChest chest) {
+        return backend.deleteAccountChest(chest);
+    }
+
+    @Override
+    public boolean deleteAccountChest(String world, int x, int y, int z) {
+        return backend.deleteAccountChest(world, x, y, z);
+    }
+
+    @Override
+    public boolean storeAccount(GringottsAccount account) {
+        return backend.storeAccount(account);
+    }
+
+    @Override
+    public boolean hasAccount(AccountHolder accountHolder) {
+        return backend.hasAccount(accountHolder);
+    }
+
+    @Override
+    public boolean renameAccount(String type, @NotNull AccountHolder holder, String newName) {
+        return renameAccount(type, holder.getId(), newName);
+    }
+
+    @Override
+    public boolean renameAccount(String type, String oldName, String newName) {
+        evict(type, oldName);
+        evict(type, newName);
+
+        return backend.renameAccount(type, oldName, newName);
+    }
+
+    @Override
+    public List<AccountChest> retrieveChests() {
+        return backend.retrieveChests();
+    }
+
+    @Override
+    public List<AccountChest> retrieveChests(GringottsAccount account) {
+        return backend.retrieveChests(account);
+    }
+
+    @Override
+    public List<AccountChest> retrieveChestsNear(Location location, int radius) {
+        return backend.retrieveChestsNear(location, radius);
+    }
+
+    @Override
+    public List<ChestIndex.Entry> retrieveChestLocations() {
+        return backend.retrieveChestLocations();
+    }
+
+    @Override
+    public List<ChestIndex.Entry> retrieveChestLocations(AccountHolder owner) {
+        return backend.retrieveChestLocations(owner);
+    }
+
+    @Override
+    public void forEachAccount(Consumer<String> action) {
+        backend.forEachAccount(action);
+    }
+
+    @Override
+    public void forEachAccount(VaultCreationEvent.Type type, Consumer<String> action) {
+        backend.forEachAccount(type, action);
+    }
+
+    @Override
+    public boolean deleteAccount(GringottsAccount acc) {
+        return deleteAccount(acc.owner.getType(), acc.owner.getId());
+    }
+
+    @Override
+    public boolean deleteAccount(String type, String account) {
+        entries.remove(key(type, account));
+
+        return backend.deleteAccount(type, account);
+    }
+
+    @Override
+    public boolean deleteAccountChests(GringottsAccount acc) {
+        return backend.deleteAccountChests(acc);
+    }
+
+    @Override
+    public boolean deleteAccountChests(String account) {
+        return backend.deleteAccountChests(account);
+    }
+
+    @Override
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+        }
+
+        flush();
+
+        synchronized (redoLock) {
+            closeRedoLog();
+
+            // nothing left to redo when everything was flushed
+            boolean clean = entries.values().stream().noneMatch(entry -> entry.dirty);
+
+            if (clean) {
+                for (File file : redoFiles()) {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+        }
+
+        backend.shutdown();
+    }
+
+    /**
+     * Changes of virtual balances made by one batch.
+     */
+    private final class Batch {
+        /**
+         * Changes already visible, reverted if the batch fails.
+         */
+        private final List<Change> applied = new ArrayList<>();
+        /**
+         * Changes to make once the batch succeeded, in order.
+         */
+        private final List<Change> staged = new ArrayList<>();
+        /**
+         * Entries changed by the batch, which must not be evicted before it ends.
+         */
+        private final Set<Entry> pinned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        /**
+         * Keep an entry from being evicted until the batch ends. Must be called while holding the monitor of the
+         * entry.
+         */
+        private void pin(Entry entry) {
+            if (pinned.add(entry)) {
+                entry.batches++;
+            }
+        }
+
+        void applied(Entry entry, long delta) {
+            pin(entry);
+            applied.add(new Change(entry, delta));
+        }
+
+        void stage(Entry entry, long delta) {
+            pin(entry);
+            staged.add(new Change(entry, delta));
+        }
+
+        /**
+         * Allow the entries changed by the batch to be evicted again.
+         */
+        void release() {
+            for (Entry entry : pinned) {
+                synchronized (entry) {
+                    entry.batches--;
+                }
+            }
+
+            pinned.clear();
+        }
+
+        boolean hasStaged(Entry entry) {
+            return staged.stream().anyMatch(change -> change.entry == entry);
+        }
+
+        long staged(Entry entry) {
+            long sum = 0;
+
+            for (Change change : staged) {
+                if (change.entry == entry) {
+                    sum += change.delta;
+                }
+            }
+
+            return sum;
+        }
+
+        /**
+         * Apply the staged changes.
+         *
+         * @throws GringottsStorageException when a change could not be applied. Changes applied so far are kept
+         *                                   for {@link #rollback()}.
+         */
+        void commit() {
+            for (Change change : staged) {
+                Entry entry = change.entry;
+
+                synchronized (entry) {
+                    long cents = entry.cents + change.delta;
+
+                    if (cents < 0 || !persist(entry, cents)) {
+                        throw new GringottsStorageException(
+                                "Failed to change virtual balance of " + entry.type + ":" + entry.owner
+                        );
+                    }
+                }
+
+                applied.add(change);
+            }
+
+            staged.clear();
+        }
+
+        /**
+         * Revert the applied changes, newest first.
+         */
+        void rollback() {
+            for (int i = applied.size() - 1; i >= 0; i--) {
+                Change change = applied.get(i);
+                Entry entry = change.entry;
+
+                synchronized (entry) {
+                    long cents = entry.cents - change.delta;
+
+                    if (cents < 0 || !persist(entry, cents)) {
+                        log.severe("Unable to revert change of " + change.delta + " cents to virtual balance of "
+                                + entry.type + ":" + entry.owner + " after a failed batch.");
+                    }
+                }
+            }
+
+            applied.clear();
+            staged.clear();
+        }
+    }
+
+    /**
+     * Change of a virtual balance by a batch.
+     */
+    private static final class Change {
+        final Entry entry;
+        final long delta;
+
+        Change(Entry entry, long delta) {
+            this.entry = entry;
+            this.delta = delta;
+        }
+    }
+
+    /**
+     * Cached virtual balance of a single account.
+     */
+    private static final class Entry {
+        final String type;
+        final String owner;
+        volatile long cents;
+        volatile boolean loaded;
+        volatile boolean dirty;
+        /**
+         * Whether the entry was used since the previous flush.
+         */
+        volatile boolean used;
+        /**
+         * Whether the entry was removed from the ledger. Guarded by the monitor of the entry.
+         */
+        boolean evicted;
+        /**
+         * Number of running batches that changed the entry. Guarded by the monitor of the entry.
+         */
+        int batches;
+
+        Entry(String type, String owner) {
+            this.type = type;
+            this.owner = owner;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.gestern.gringotts.data;
 
 import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.SqlRow;
+import com.avaje.ebean.SqlUpdate;
 import org.gestern.gringotts.Gringotts;
 
 import java.io.File;
@@ -19,6 +21,7 @@ import java.util.logging.Logger;
  * <p>
  * * migrate derby to eBean
  * * migrate player names to uuids
+ * * normalize account ids of the built-in types to lower case and index them
  */
 public class Migration {
 
@@ -28,6 +31,7 @@ public class Migration {
     private final File gringottsFolder = Gringotts.getInstance().getDataFolder();
     private final File derbyMigratedFlag = new File(gringottsFolder, ".derby-migrated");
     private final File uuidsMigratedFlag = new File(Gringotts.getInstance().getDataFolder(), ".uuids-migrated");
+    private final File accountsNormalizedFlag = new File(gringottsFolder, ".accounts-normalized");
 
     /**
      * Return whether the legacy derby db has been migrated to bukkit built-in sqlite / ebean.
@@ -44,6 +48,13 @@ public class Migration {
         return uuidsMigratedFlag.exists();
     }
 
+    /**
+     * Return whether account types and owners have been converted to lower case and indexed.
+     */
+    public boolean isAccountsNormalized() {
+        return accountsNormalizedFlag.exists();
+    }
+
     /**
      * Perform migration of player names in db to uuids.
      */
@@ -121,6 +132,107 @@ public class Migration {
         }
     }
 
+    /**
+     * Convert types and owners of accounts of the built-in types to lower case, so they can be looked up by exact
+     * match, and add the indexes used by account and chest lookups. Such accounts differing only in case are merged
+     * into the oldest of them. Accounts of other types are left alone, see {@link AccountIds}.
+     */
+    public void doAccountNormalization() {
+        String builtIn = "lower(type) IN ('" + String.join("', '", AccountIds.CASE_INSENSITIVE_TYPES) + "')";
+
+        try {
+            // either update all, or nothing
+            db.beginTransaction();
+
+            List<SqlRow> duplicates = db.createSqlQuery(
+                    "SELECT lower(type) AS ltype, lower(owner) AS lowner FROM gringotts_account " +
+                            "WHERE " + builtIn + " GROUP BY lower(type), lower(owner) HAVING count(*) > 1"
+            ).findList();
+
+            for (SqlRow duplicate : duplicates) {
+                mergeAccounts(duplicate.getString("ltype"), duplicate.getString("lowner"));
+            }
+
+            db.createSqlUpdate(
+                    "UPDATE gringotts_account SET type = lower(type), owner = lower(owner) WHERE " + builtIn
+            ).execute();
+
+            db.createSqlUpdate("CREATE UNIQUE INDEX IF NOT EXISTS gringotts_account_type_owner " +
+                    "ON gringotts_account (type, owner)").execute();
+            db.createSqlUpdate("CREATE INDEX IF NOT EXISTS gringotts_accountchest_account " +
+                    "ON gringotts_accountchest (account)").execute();
+            db.createSqlUpdate("CREATE INDEX IF NOT EXISTS gringotts_accountchest_location " +
+                    "ON gringotts_accountchest (world, x, y, z)").execute();
+
+            db.commitTransaction();
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Unable to normalize account ids. Account lookups will be slower.", e);
+            return;
+        } finally {
+            db.endTransaction();
+        }
+
+        try {
+            Files.createFile(accountsNormalizedFlag.toPath());
+
+            log.info("Account id normalization complete.");
+        } catch (IOException e) {
+            log.log(Level.SEVERE,
+                    "Failed to set account normalization complete flag (but it probably completed anyway)", e);
+        }
+    }
+
+    /**
+     * Merge all accounts with the given type and owner, ignoring case, into the oldest one.
+     * Balances are added up and chests are moved to the remaining account.
+     *
+     * @param type  account type in lower case
+     * @param owner account owner in lower case
+     */
+    private void mergeAccounts(String type, String owner) {
+        List<SqlRow> accounts = db.createSqlQuery(
+                "SELECT id, cents FROM gringotts_account " +
+                        "WHERE lower(type) = :type and lower(owner) = :owner ORDER BY id"
+        )
+                .setParameter("type", type)
+                .setParameter("owner", owner)
+                .findList();
+
+        int kept = accounts.get(0).getInteger("id");
+        long cents = 0;
+
+        for (SqlRow account : accounts) {
+            int id = account.getInteger("id");
+
+            cents += account.getLong("cents");
+
+            if (id == kept) {
+                continue;
+            }
+
+            SqlUpdate moveChests = db.createSqlUpdate(
+                    "UPDATE gringotts_accountchest SET account = :kept WHERE account = :id"
+            );
+
+            moveChests.setParameter("kept", kept);
+            moveChests.setParameter("id", id);
+            moveChests.execute();
+
+            SqlUpdate delete = db.createSqlUpdate("DELETE FROM gringotts_account WHERE id = :id");
+
+            delete.setParameter("id", id);
+            delete.execute();
+        }
+
+        SqlUpdate storeCents = db.createSqlUpdate("UPDATE gringotts_account SET cents = :cents WHERE id = :id");
+
+        storeCents.setParameter("cents", cents);
+        storeCents.setParameter("id", kept);
+        storeCents.execute();
+
+        log.info("Merged " + accounts.size() + " accounts of " + type + " " + owner + " differing only in case.");
+    }
+
     /**
      * Migrate an existing Derby DB to Bukkit-internal EBean.
      */
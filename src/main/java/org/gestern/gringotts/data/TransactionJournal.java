@@ -0,0 +1,618 @@
+package org.gestern.gringotts.data;
+
+import org.gestern.gringotts.Gringotts;
+import org.gestern.gringotts.GringottsStorageException;
+import org.gestern.gringotts.api.TransactionResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.DateFormat;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of transactions between accounts.
+ * <p>
+ * Every transaction is recorded twice: when it begins and with its result when it ends. Records are handed to a
+ * dedicated writer thread, which appends them to the current segment file and forces all records that arrived
+ * together to disk at once, so transactions never wait for the disk. Full segments are closed and a new one is
+ * started. When there are too many closed segments, they are folded into a snapshot of per-account totals and
+ * deleted.
+ * <p>
+ * On startup, transactions that began but never ended, for example because the server crashed between taking the
+ * money from one account and adding it to the other, are reported in the log and recorded as failed. Transactions
+ * that are still open when their segment is folded are kept in the snapshot until they end.
+ */
+public class TransactionJournal {
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final int SEGMENT_MAGIC = 0x474a524e;
+    private static final int SNAPSHOT_MAGIC = 0x474a534e;
+    private static final int VERSION = 1;
+
+    /**
+     * Version 2 of the snapshot added the open transactions.
+     */
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private static final byte BEGIN = 1;
+    private static final byte END = 2;
+
+    /**
+     * Maximum number of records forced to disk at once.
+     */
+    private static final int MAX_GROUP = 1024;
+
+    /**
+     * Upper bound of the size of a record, to recognize garbage at the end of a segment.
+     */
+    private static final int MAX_RECORD_SIZE = 2 * 65535 + 64;
+
+    /**
+     * Positions of the totals kept per account in the snapshot.
+     */
+    private static final int SENT = 0, RECEIVED = 1, TAXES = 2, TRANSACTIONS = 3;
+
+    /**
+     * Marks the end of the record queue.
+     */
+    private static final Record STOP = new Record((byte) 0, 0, 0, "", "", 0, 0, (byte) -1);
+
+    private final Logger log = Gringotts.getInstance().getLogger();
+    private final File folder;
+    private final long segmentSize;
+    private final int maxSegments;
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Thread writer;
+
+    private long segment;
+    private long segmentBytes;
+    private FileOutputStream segmentFile;
+    private DataOutputStream out;
+
+    /**
+     * Open the journal in the given folder and start its writer thread.
+     *
+     * @param folder      folder holding the journal segments and snapshot
+     * @param segmentSize size in bytes after which a segment is closed
+     * @param maxSegments number of closed segments to keep before folding them into the snapshot
+     * @throws GringottsStorageException when the journal can't be read or opened
+     */
+    public TransactionJournal(File folder, long segmentSize, int maxSegments) {
+        this.folder = folder;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(1, maxSegments);
+
+        //noinspection ResultOfMethodCallIgnored
+        folder.mkdirs();
+
+        recover();
+
+        try {
+            openSegment();
+        } catch (IOException e) {
+            throw new GringottsStorageException("Failed to open transaction journal in " + folder, e);
+        }
+
+        writer = new Thread(this::write, "Gringotts transaction journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Record the start of a transaction. Returns immediately, the record is written in the background.
+     *
+     * @param from   account money is taken from, as "type:id"
+     * @param to     account money is given to, as "type:id"
+     * @param amount amount of the transaction in cents
+     * @param tax    taxes taken from the sender in cents
+     * @return the started transaction, to be passed to {@link #end(Transfer, TransactionResult)}
+     */
+    public Transfer begin(String from, String to, long amount, long tax) {
+        Transfer transfer = new Transfer(nextId.getAndIncrement(), from, to, amount, tax);
+
+        queue.add(new Record(BEGIN, transfer.id, System.currentTimeMillis(), from, to, amount, tax, (byte) -1));
+
+        return transfer;
+    }
+
+    /**
+     * Record the result of a transaction. Returns immediately, the record is written in the background.
+     *
+     * @param transfer the transaction, as returned by {@link #begin(String, String, long, long)}
+     * @param result   result of the transaction
+     */
+    public void end(Transfer transfer, TransactionResult result) {
+        queue.add(new Record(
+                END,
+                transfer.id,
+                System.currentTimeMillis(),
+                transfer.from,
+                transfer.to,
+                transfer.amount,
+                transfer.tax,
+                (byte) result.ordinal()
+        ));
+    }
+
+    /**
+     * Write all outstanding records and stop the writer thread.
+     */
+    public void shutdown() {
+        queue.add(STOP);
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writer thread: append records in groups, forcing each group to disk once.
+     */
+    private void write() {
+        List<Record> group = new ArrayList<>();
+        boolean running = true;
+
+        while (running) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                // only shutdown stops the writer
+                continue;
+            }
+
+            queue.drainTo(group, MAX_GROUP - 1);
+
+            try {
+                if (out == null) {
+                    openSegment();
+                }
+
+                for (Record record : group) {
+                    if (record == STOP) {
+                        running = false;
+
+                        break;
+                    }
+
+                    append(record);
+                }
+
+                out.flush();
+                segmentFile.getChannel().force(false);
+
+                if (running && segmentBytes >= segmentSize) {
+                    openSegment();
+                }
+            } catch (IOException e) {
+                log.log(Level.SEVERE, "Unable to write transaction journal. " + group.size() + " records lost.", e);
+
+                // continue in a fresh segment
+                closeSegment();
+            }
+
+            group.clear();
+        }
+
+        closeSegment();
+    }
+
+    private void append(Record record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+
+        writeRecord(new DataOutputStream(bytes), record);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+
+        out.writeInt(bytes.size());
+        out.writeInt((int) crc.getValue());
+        bytes.writeTo(out);
+
+        segmentBytes += 8 + bytes.size();
+    }
+
+    /**
+     * Close the current segment, if any, start the next one and fold old segments into the snapshot when there
+     * are too many of them.
+     */
+    private void openSegment() throws IOException {
+        closeSegment();
+
+        if (segments().size() > maxSegments) {
+            compact();
+        }
+
+        File file = new File(folder, ++segment + SEGMENT_SUFFIX);
+
+        segmentFile = new FileOutputStream(file, true);
+        out = new DataOutputStream(new BufferedOutputStream(segmentFile));
+
+        out.writeInt(SEGMENT_MAGIC);
+        out.writeInt(VERSION);
+        out.flush();
+
+        segmentBytes = 8;
+    }
+
+    private void closeSegment() {
+        if (out == null) {
+            return;
+        }
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to close transaction journal segment.", e);
+        }
+
+        out = null;
+        segmentFile = null;
+    }
+
+    /**
+     * Journal segments currently on disk, oldest first.
+     */
+    private List<File> segments() {
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+
+        if (files == null) {
+            return new ArrayList<>();
+        }
+
+        List<File> sorted = new ArrayList<>(Arrays.asList(files));
+        sorted.sort(Comparator.comparingLong(TransactionJournal::segmentOf));
+
+        return sorted;
+    }
+
+    private static long segmentOf(File file) {
+        String name = file.getName();
+
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Read the records of a segment. A torn or corrupt record ends the segment, as it can only be the last one
+     * written before a crash.
+     */
+    private List<Record> read(File file) throws IOException {
+        List<Record> records = new ArrayList<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != SEGMENT_MAGIC || in.readInt() != VERSION) {
+                log.warning("Ignoring transaction journal segment of unknown format: " + file);
+
+                return records;
+            }
+
+            while (true) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+
+                if (length < 0 || length > MAX_RECORD_SIZE) {
+                    log.warning("Ignoring corrupt end of transaction journal segment " + file);
+
+                    break;
+                }
+
+                byte[] bytes = new byte[length];
+
+                in.readFully(bytes);
+
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+
+                if ((int) crc.getValue() != checksum) {
+                    log.warning("Ignoring corrupt end of transaction journal segment " + file);
+
+                    break;
+                }
+
+                records.add(readRecord(new DataInputStream(new ByteArrayInputStream(bytes))));
+            }
+        } catch (EOFException ignored) {
+            // end of segment, possibly torn
+        }
+
+        return records;
+    }
+
+    private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+        out.writeByte(record.kind);
+        out.writeLong(record.id);
+        out.writeLong(record.timestamp);
+        out.writeUTF(record.from);
+        out.writeUTF(record.to);
+        out.writeLong(record.amount);
+        out.writeLong(record.tax);
+        out.writeByte(record.result);
+    }
+
+    private static Record readRecord(DataInputStream in) throws IOException {
+        return new Record(
+                in.readByte(),
+                in.readLong(),
+                in.readLong(),
+                in.readUTF(),
+                in.readUTF(),
+                in.readLong(),
+                in.readLong(),
+                in.readByte()
+        );
+    }
+
+    /**
+     * Continue numbering after the existing segments, and report transactions that never ended and record them as
+     * failed, so they are reported only once.
+     */
+    private void recover() {
+        Snapshot snapshot = readSnapshot();
+        Map<Long, Record> open = new LinkedHashMap<>(snapshot.open);
+        long lastId = snapshot.lastId;
+
+        segment = snapshot.lastSegment;
+
+        for (File file : segments()) {
+            segment = Math.max(segment, segmentOf(file));
+
+            List<Record> records;
+
+            try {
+                records = read(file);
+            } catch (IOException e) {
+                throw new GringottsStorageException("Failed to read transaction journal segment " + file, e);
+            }
+
+            for (Record record : records) {
+                lastId = Math.max(lastId, record.id);
+
+                if (record.kind == BEGIN) {
+                    open.put(record.id, record);
+                } else {
+                    open.remove(record.id);
+                }
+            }
+        }
+
+        nextId.set(lastId + 1);
+
+        DateFormat format = DateFormat.getDateTimeInstance();
+
+        for (Record record : open.values()) {
+            log.warning(String.format(
+                    "Transaction %d of %d cents (tax %d) from %s to %s, started %s, did not complete. " +
+                            "The balances of these accounts may need to be corrected.",
+                    record.id,
+                    record.amount,
+                    record.tax,
+                    record.from,
+                    record.to,
+                    format.format(new Date(record.timestamp))
+            ));
+
+            // written once the writer thread has started
+            queue.add(new Record(
+                    END,
+                    record.id,
+                    System.currentTimeMillis(),
+                    record.from,
+                    record.to,
+                    record.amount,
+                    record.tax,
+                    (byte) TransactionResult.ERROR.ordinal()
+            ));
+        }
+    }
+
+    /**
+     * Fold all closed segments into the snapshot, then delete them. Transactions that began but did not end yet are
+     * kept in the snapshot, so they are still reported if they never end. Runs on the writer thread while no segment
+     * is open.
+     */
+    private void compact() {
+        Snapshot snapshot = readSnapshot();
+        List<File> folded = segments();
+
+        try {
+            for (File file : folded) {
+                for (Record record : read(file)) {
+                    snapshot.lastId = Math.max(snapshot.lastId, record.id);
+
+                    if (record.kind == BEGIN) {
+                        snapshot.open.put(record.id, record);
+
+                        continue;
+                    }
+
+                    snapshot.open.remove(record.id);
+
+                    if (record.result == TransactionResult.SUCCESS.ordinal()) {
+                        long[] sender = snapshot.totals(record.from);
+                        long[] recipient = snapshot.totals(record.to);
+
+                        sender[SENT] += record.amount;
+                        sender[TAXES] += record.tax;
+                        sender[TRANSACTIONS]++;
+                        recipient[RECEIVED] += record.amount;
+                        recipient[TRANSACTIONS]++;
+                    }
+                }
+
+                snapshot.lastSegment = Math.max(snapshot.lastSegment, segmentOf(file));
+            }
+
+            writeSnapshot(snapshot);
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Unable to compact transaction journal. Keeping all segments.", e);
+
+            return;
+        }
+
+        for (File file : folded) {
+            if (!file.delete()) {
+                log.warning("Unable to delete transaction journal segment " + file);
+            }
+        }
+    }
+
+    private Snapshot readSnapshot() {
+        Snapshot snapshot = new Snapshot();
+        File file = new File(folder, SNAPSHOT_FILE);
+
+        if (!file.exists()) {
+            return snapshot;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : -1;
+
+            if (version < 1 || version > SNAPSHOT_VERSION) {
+                throw new GringottsStorageException("Unknown format of transaction journal snapshot " + file);
+            }
+
+            snapshot.lastSegment = in.readLong();
+            snapshot.lastId = in.readLong();
+
+            int accounts = in.readInt();
+
+            for (int i = 0; i < accounts; i++) {
+                String account = in.readUTF();
+
+                snapshot.totals.put(account, new long[]{in.readLong(), in.readLong(), in.readLong(), in.readLong()});
+            }
+
+            int open = version >= 2 ? in.readInt() : 0;
+
+            for (int i = 0; i < open; i++) {
+                Record record = readRecord(in);
+
+                snapshot.open.put(record.id, record);
+            }
+        } catch (IOException e) {
+            throw new GringottsStorageException("Failed to read transaction journal snapshot " + file, e);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Write a snapshot to a temporary file and move it in place, so a crash leaves either the old or the new one.
+     */
+    private void writeSnapshot(Snapshot snapshot) throws IOException {
+        File temp = new File(folder, SNAPSHOT_FILE + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(snapshot.lastSegment);
+            out.writeLong(snapshot.lastId);
+            out.writeInt(snapshot.totals.size());
+
+            for (Map.Entry<String, long[]> entry : snapshot.totals.entrySet()) {
+                out.writeUTF(entry.getKey());
+
+                for (long value : entry.getValue()) {
+                    out.writeLong(value);
+                }
+            }
+
+            out.writeInt(snapshot.open.size());
+
+            for (Record record : snapshot.open.values()) {
+                writeRecord(out, record);
+            }
+
+            out.flush();
+            file.getChannel().force(false);
+        }
+
+        Files.move(
+                temp.toPath(),
+                new File(folder, SNAPSHOT_FILE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    /**
+     * A transaction that has begun.
+     */
+    public static final class Transfer {
+        final long id;
+        final String from;
+        final String to;
+        final long amount;
+        final long tax;
+
+        Transfer(long id, String from, String to, long amount, long tax) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+            this.amount = amount;
+            this.tax = tax;
+        }
+    }
+
+    private static final class Record {
+        final byte kind;
+        final long id;
+        final long timestamp;
+        final String from;
+        final String to;
+        final long amount;
+        final long tax;
+        final byte result;
+
+        Record(byte kind, long id, long timestamp, String from, String to, long amount, long tax, byte result) {
+            this.kind = kind;
+            this.id = id;
+            this.timestamp = timestamp;
+            this.from = from;
+            this.to = to;
+            this.amount = amount;
+            this.tax = tax;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Totals of all folded segments: per account the cents sent, received and paid as taxes, and the number of
+     * successful transactions. Also the transactions of the folded segments that did not end yet, by id.
+     */
+    private static final class Snapshot {
+        long lastSegment;
+        long lastId;
+        final Map<String, long[]> totals = new TreeMap<>();
+        final Map<Long, Record> open = new LinkedHashMap<>();
+
+        long[] totals(String account) {
+            return totals.computeIfAbsent(account, k -> new long[4]);
+        }
+    }
+}
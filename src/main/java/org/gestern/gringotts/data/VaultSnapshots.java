@@ -0,0 +1,203 @@
+package org.gestern.gringotts.data;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Last known value of every vault, persisted across restarts.
+ * <p>
+ * Whenever a vault is counted or changed, its value is remembered together with the time it was seen. Balance reads
+ * may use these snapshots for vaults in chunks that are not loaded, instead of loading the chunk just to count it.
+ * Snapshots are keyed by the location of the vault sign and written to {@code vaults.dat} in the background when
+ * they changed, and on shutdown. Snapshots of vaults that are no longer stored are dropped when writing.
+ */
+public class VaultSnapshots {
+
+    private static final String SNAPSHOT_FILE = "vaults.dat";
+    private static final int MAGIC = 0x47565353;
+    private static final int VERSION = 1;
+
+    /**
+     * Ticks between writes of changed snapshots.
+     */
+    private static final long SAVE_INTERVAL = 1200;
+
+    private final Logger log;
+    private final File folder;
+    private final DAO dao;
+    private final Map<ChestIndex.Entry, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final BukkitTask saveTask;
+
+    /**
+     * Load the snapshots stored in a folder and start writing changes in the background.
+     *
+     * @param plugin plugin owning the save task
+     * @param folder folder to keep the snapshot file in
+     * @param dao    storage of the vaults, to drop snapshots of vaults that no longer exist
+     */
+    public VaultSnapshots(Plugin plugin, File folder, DAO dao) {
+        this.log = plugin.getLogger();
+        this.folder = folder;
+        this.dao = dao;
+
+        load();
+
+        this.saveTask = Bukkit.getScheduler().runTaskTimerAsynchronously(
+                plugin,
+                this::save,
+                SAVE_INTERVAL,
+                SAVE_INTERVAL
+        );
+    }
+
+    private static ChestIndex.Entry key(String world, int x, int y, int z) {
+        return new ChestIndex.Entry(world, x, y, z, null, null);
+    }
+
+    /**
+     * Remember the value of a vault. May be called from any thread.
+     *
+     * @param world world name of the vault sign
+     * @param x     x coordinate of the vault sign
+     * @param y     y coordinate of the vault sign
+     * @param z     z coordinate of the vault sign
+     * @param cents value of the vault in cents
+     */
+    public void record(String world, int x, int y, int z, long cents) {
+        snapshots.put(key(world, x, y, z), new Snapshot(cents, System.currentTimeMillis()));
+        dirty.set(true);
+    }
+
+    /**
+     * Get the last known value of a vault.
+     *
+     * @param vault location of the vault sign
+     * @return the snapshot of the vault, or null if it was never seen
+     */
+    public Snapshot get(ChestIndex.Entry vault) {
+        return snapshots.get(key(vault.world, vault.x, vault.y, vault.z));
+    }
+
+    private void load() {
+        File file = new File(folder, SNAPSHOT_FILE);
+
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warning("Unknown format of vault snapshots " + file + ". Vaults will be counted again.");
+
+                return;
+            }
+
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                ChestIndex.Entry key = key(in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+
+                snapshots.put(key, new Snapshot(in.readLong(), in.readLong()));
+            }
+        } catch (IOException e) {
+            // snapshots only save work, losing them is not worth failing startup
+            log.log(Level.WARNING, "Failed to read vault snapshots " + file + ". Vaults will be counted again.", e);
+            snapshots.clear();
+        }
+    }
+
+    /**
+     * Write the snapshots to disk if any changed since the last write.
+     */
+    private synchronized void save() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+
+        snapshots.keySet().retainAll(new HashSet<>(dao.retrieveChestLocations()));
+
+        List<Map.Entry<ChestIndex.Entry, Snapshot>> entries = new ArrayList<>(snapshots.entrySet());
+        File temp = new File(folder, SNAPSHOT_FILE + ".tmp");
+
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+
+                for (Map.Entry<ChestIndex.Entry, Snapshot> entry : entries) {
+                    ChestIndex.Entry vault = entry.getKey();
+
+                    out.writeUTF(vault.world);
+                    out.writeInt(vault.x);
+                    out.writeInt(vault.y);
+                    out.writeInt(vault.z);
+                    out.writeLong(entry.getValue().cents);
+                    out.writeLong(entry.getValue().time);
+                }
+
+                out.flush();
+                file.getChannel().force(false);
+            }
+
+            Files.move(
+                    temp.toPath(),
+                    new File(folder, SNAPSHOT_FILE).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE
+            );
+        } catch (IOException e) {
+            dirty.set(true);
+            log.log(Level.WARNING, "Failed to write vault snapshots.", e);
+        }
+    }
+
+    /**
+     * Stop writing in the background and write the current snapshots.
+     */
+    public void shutdown() {
+        saveTask.cancel();
+        save();
+    }
+
+    /**
+     * Value of a vault at the time it was last seen.
+     */
+    public static final class Snapshot {
+        /**
+         * Value of the vault in cents.
+         */
+        public final long cents;
+        /**
+         * Time the vault was seen, in milliseconds since the epoch.
+         */
+        public final long time;
+
+        private Snapshot(long cents, long time) {
+            this.cents = cents;
+            this.time = time;
+        }
+    }
+}
@@ -157,6 +157,8 @@ public class TownHolderProvider implements AccountHolderProvider, Listener {
 
         GringottsAccount account = this.gringotts.getAccounting().getAccount(holder);
 
-        this.gringotts.getDao().retrieveChests(account).forEach(AccountChest::updateSign);
+        // the cached vault signs still show the old name
+        this.gringotts.getAccounting().invalidateChests(holder);
+        this.gringotts.getAccounting().getChests(account).forEach(AccountChest::updateSign);
     }
 }
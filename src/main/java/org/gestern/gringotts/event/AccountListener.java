@@ -5,7 +5,13 @@ import org.bukkit.block.Sign;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.gestern.gringotts.Gringotts;
 import org.gestern.gringotts.Util;
+import org.gestern.gringotts.accountholder.PlayerAccountHolder;
 
 import java.util.Optional;
 import java.util.regex.Matcher;
@@ -71,4 +77,46 @@ public class AccountListener implements Listener {
             Bukkit.getServer().getPluginManager().callEvent(creation);
         }
     }
+
+    /**
+     * Forget cached vaults of all accounts when a world is loaded, vaults in it were skipped until now.
+     *
+     * @param event Event data.
+     */
+    @EventHandler
+    public void onWorldLoad(WorldLoadEvent event) {
+        Gringotts.getInstance().getAccounting().invalidateChests();
+    }
+
+    /**
+     * Forget cached vaults of an unloaded world, their blocks are no longer valid.
+     *
+     * @param event Event data.
+     */
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent event) {
+        Gringotts.getInstance().getAccounting().invalidateChests(event.getWorld());
+        Gringotts.getInstance().getAccounting().getChestBalances().invalidate(event.getWorld());
+    }
+
+    /**
+     * Keep the player name index and resolver current for new players and changed names.
+     *
+     * @param event Event data.
+     */
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Gringotts.getInstance().getAccountHolderFactory().getPlayerNames().add(event.getPlayer());
+        Gringotts.getInstance().getAccountHolderFactory().getPlayerResolver().invalidate(event.getPlayer());
+    }
+
+    /**
+     * Drop the account instance of a player going offline, it refers to the player object of this session.
+     *
+     * @param event Event data.
+     */
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        Gringotts.getInstance().getAccounting().evictAccount(new PlayerAccountHolder(event.getPlayer()));
+    }
 }
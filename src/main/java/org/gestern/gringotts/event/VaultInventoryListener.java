@@ -0,0 +1,130 @@
+package org.gestern.gringotts.event;
+
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockDispenseEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.inventory.FurnaceBurnEvent;
+import org.bukkit.event.inventory.FurnaceSmeltEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryPickupItemEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.gestern.gringotts.ChestBalanceCache;
+import org.gestern.gringotts.Gringotts;
+import org.gestern.gringotts.Util;
+
+import java.util.List;
+
+/**
+ * Forgets cached vault container values when their contents are changed by anything other than Gringotts, and when
+ * their chunk unloads.
+ */
+public class VaultInventoryListener implements Listener {
+
+    private static ChestBalanceCache chestBalances() {
+        return Gringotts.getInstance().getAccounting().getChestBalances();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent event) {
+        // shift clicks in the player's inventory change the container as well
+        chestBalances().invalidateBeforeChange(event.getView().getTopInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        chestBalances().invalidateBeforeChange(event.getView().getTopInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClose(InventoryCloseEvent event) {
+        chestBalances().invalidate(event.getView().getTopInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryMoveItem(InventoryMoveItemEvent event) {
+        chestBalances().invalidateBeforeChange(event.getSource());
+        chestBalances().invalidateBeforeChange(event.getDestination());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryPickupItem(InventoryPickupItemEvent event) {
+        chestBalances().invalidateBeforeChange(event.getInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockDispense(BlockDispenseEvent event) {
+        chestBalances().invalidateNearBeforeChange(event.getBlock().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFurnaceBurn(FurnaceBurnEvent event) {
+        chestBalances().invalidateNearBeforeChange(event.getBlock().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFurnaceSmelt(FurnaceSmeltEvent event) {
+        chestBalances().invalidateNearBeforeChange(event.getBlock().getLocation());
+    }
+
+    /**
+     * Breaking a container drops its contents, and breaking or placing a chest changes which chests form a double
+     * chest.
+     *
+     * @param event Event data.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        if (Util.isValidContainer(event.getBlock().getType())) {
+            chestBalances().invalidateNearBeforeChange(event.getBlock().getLocation());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        if (Util.isValidContainer(event.getBlock().getType())) {
+            chestBalances().invalidateNearBeforeChange(event.getBlock().getLocation());
+        }
+    }
+
+    /**
+     * Explosions drop the contents of destroyed containers.
+     *
+     * @param event Event data.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        invalidateExploded(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        invalidateExploded(event.blockList());
+    }
+
+    /**
+     * Values of containers in unloaded chunks are not needed until the chunk is loaded and counted again.
+     *
+     * @param event Event data.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        chestBalances().invalidate(event.getChunk());
+    }
+
+    private static void invalidateExploded(List<Block> blocks) {
+        for (Block block : blocks) {
+            if (Util.isValidContainer(block.getType())) {
+                chestBalances().invalidateNearBeforeChange(block.getLocation());
+            }
+        }
+    }
+}
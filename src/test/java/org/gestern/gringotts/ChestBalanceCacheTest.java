@@ -0,0 +1,102 @@
+package org.gestern.gringotts;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.*;
+
+
+public class ChestBalanceCacheTest {
+
+    private static final World WORLD = (World) Proxy.newProxyInstance(
+            World.class.getClassLoader(),
+            new Class<?>[]{World.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getName":
+                        return "world";
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+    );
+
+    /**
+     * Chest inventory at a block location.
+     */
+    private static Inventory chest(int x, int y, int z) {
+        return (Inventory) Proxy.newProxyInstance(
+                Inventory.class.getClassLoader(),
+                new Class<?>[]{Inventory.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getType":
+                            return InventoryType.CHEST;
+                        case "getLocation":
+                            return new Location(WORLD, x, y, z);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }
+        );
+    }
+
+    /**
+     * Chunk of the test world at chunk coordinates.
+     */
+    private static Chunk chunk(int x, int z) {
+        return (Chunk) Proxy.newProxyInstance(
+                Chunk.class.getClassLoader(),
+                new Class<?>[]{Chunk.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getWorld":
+                            return WORLD;
+                        case "getX":
+                            return x;
+                        case "getZ":
+                            return z;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }
+        );
+    }
+
+    @Test
+    public void balanceIsRememberedUntilInvalidated() {
+        ChestBalanceCache cache = new ChestBalanceCache();
+        Inventory chest = chest(1, 64, 1);
+
+        assertEquals(5, cache.balance(chest, () -> 5));
+        assertEquals(5, cache.balance(chest, () -> 7));
+
+        cache.invalidate(chest);
+
+        assertEquals(7, cache.balance(chest, () -> 7));
+    }
+
+    @Test
+    public void chunkUnloadForgetsOnlyContainersInThatChunk() {
+        ChestBalanceCache cache = new ChestBalanceCache();
+        Inventory unloaded = chest(1, 64, 1);
+        Inventory loaded = chest(20, 64, 1);
+
+        cache.balance(unloaded, () -> 5);
+        cache.balance(loaded, () -> 5);
+        cache.invalidate(chunk(0, 0));
+
+        assertEquals(7, cache.balance(unloaded, () -> 7));
+        assertEquals(5, cache.balance(loaded, () -> 7));
+    }
+}
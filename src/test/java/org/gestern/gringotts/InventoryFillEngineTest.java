@@ -0,0 +1,166 @@
+package org.gestern.gringotts;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.gestern.gringotts.InventoryFillEngine.EMPTY;
+import static org.gestern.gringotts.InventoryFillEngine.OTHER;
+import static org.junit.Assert.*;
+
+
+public class InventoryFillEngineTest {
+
+    private static final long[] VALUES = {9, 1};
+    private static final int[] MAX_STACK_SIZES = {64, 64};
+
+    private static int[] filled(int length, int value) {
+        int[] array = new int[length];
+
+        Arrays.fill(array, value);
+
+        return array;
+    }
+
+    /**
+     * Reference: put the items one by one, like Inventory.addItem does for a single item.
+     */
+    private static long referenceFill(int[] kinds, int[] amounts, long value, long[] values, int[] maxStackSizes) {
+        long remaining = value;
+
+        for (int d = 0; d < values.length; d++) {
+            if (values[d] > remaining) {
+                continue;
+            }
+
+            long count = remaining / values[d];
+
+            items:
+            while (count > 0) {
+                for (int slot = 0; slot < kinds.length; slot++) {
+                    if (kinds[slot] == d && amounts[slot] < maxStackSizes[d]) {
+                        amounts[slot]++;
+                        count--;
+                        remaining -= values[d];
+                        continue items;
+                    }
+                }
+
+                for (int slot = 0; slot < kinds.length; slot++) {
+                    if (kinds[slot] == EMPTY) {
+                        kinds[slot] = d;
+                        amounts[slot] = 1;
+                        count--;
+                        remaining -= values[d];
+                        continue items;
+                    }
+                }
+
+                break;
+            }
+        }
+
+        return value - remaining;
+    }
+
+    @Test
+    public void fillEmptyInventory() {
+        InventoryFillEngine engine = new InventoryFillEngine(filled(27, EMPTY), new int[27], 64);
+
+        assertEquals(100, engine.fill(100, VALUES, MAX_STACK_SIZES));
+        assertEquals(0, engine.kind(0));
+        assertEquals(11, engine.amount(0));
+        assertEquals(1, engine.kind(1));
+        assertEquals(1, engine.amount(1));
+        assertFalse(engine.changed(2));
+    }
+
+    @Test
+    public void topUpPartialStackBeforeEmptySlot() {
+        int[] kinds = {OTHER, EMPTY, 0};
+        int[] amounts = {1, 0, 60};
+        InventoryFillEngine engine = new InventoryFillEngine(kinds, amounts, 64);
+
+        assertEquals(10, engine.fill(10, new long[]{1}, new int[]{64}));
+        assertEquals(64, engine.amount(2));
+        assertEquals(0, engine.kind(1));
+        assertEquals(6, engine.amount(1));
+        assertFalse(engine.changed(0));
+    }
+
+    @Test
+    public void fullInventoryTakesNothing() {
+        InventoryFillEngine engine = new InventoryFillEngine(filled(9, OTHER), filled(9, 1), 64);
+
+        assertEquals(0, engine.fill(1000, VALUES, MAX_STACK_SIZES));
+
+        for (int slot = 0; slot < 9; slot++) {
+            assertFalse(engine.changed(slot));
+        }
+    }
+
+    @Test
+    public void stopsWhenNoSpaceIsLeft() {
+        InventoryFillEngine engine = new InventoryFillEngine(filled(2, EMPTY), new int[2], 64);
+
+        assertEquals(128 * 9, engine.fill(200 * 9, VALUES, MAX_STACK_SIZES));
+        assertEquals(64, engine.amount(0));
+        assertEquals(64, engine.amount(1));
+    }
+
+    @Test
+    public void smallInventoryStackSizeIsToppedUpLikeAddItem() {
+        InventoryFillEngine engine = new InventoryFillEngine(filled(2, EMPTY), new int[2], 16);
+
+        assertEquals(40, engine.fill(40, new long[]{1}, new int[]{64}));
+        assertEquals(40, engine.amount(0));
+        assertEquals(EMPTY, engine.kind(1));
+    }
+
+    @Test
+    public void doesNotChangeInput() {
+        int[] kinds = filled(3, EMPTY);
+        int[] amounts = new int[3];
+
+        new InventoryFillEngine(kinds, amounts, 64).fill(50, VALUES, MAX_STACK_SIZES);
+
+        assertArrayEquals(filled(3, EMPTY), kinds);
+        assertArrayEquals(new int[3], amounts);
+    }
+
+    @Test
+    public void matchesItemByItemPlacement() {
+        Random random = new Random(42);
+        long[] values = {64, 9, 1};
+        int[] maxStackSizes = {16, 64, 64};
+
+        for (int run = 0; run < 500; run++) {
+            int size = 1 + random.nextInt(54);
+            int[] kinds = new int[size];
+            int[] amounts = new int[size];
+
+            for (int slot = 0; slot < size; slot++) {
+                int kind = random.nextInt(values.length + 2) - 2;
+
+                kinds[slot] = kind;
+                amounts[slot] = kind == EMPTY ? 0 : 1 + random.nextInt(kind >= 0 ? maxStackSizes[kind] : 64);
+            }
+
+            long value = random.nextInt(20000);
+            InventoryFillEngine engine = new InventoryFillEngine(kinds, amounts, 64);
+            long added = engine.fill(value, values, maxStackSizes);
+
+            int[] expectedKinds = kinds.clone();
+            int[] expectedAmounts = amounts.clone();
+            long expectedAdded = referenceFill(expectedKinds, expectedAmounts, value, values, maxStackSizes);
+
+            assertEquals(expectedAdded, added);
+
+            for (int slot = 0; slot < size; slot++) {
+                assertEquals(expectedKinds[slot], engine.kind(slot));
+                assertEquals(expectedAmounts[slot], engine.amount(slot));
+            }
+        }
+    }
+}
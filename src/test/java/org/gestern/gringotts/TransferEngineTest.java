@@ -0,0 +1,89 @@
+package org.gestern.gringotts;
+
+import org.gestern.gringotts.accountholder.TestAccountHolder;
+import org.gestern.gringotts.data.MemoryDAO;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+
+public class TransferEngineTest {
+
+    private static GringottsAccount account(String id) {
+        return new GringottsAccount(new TestAccountHolder("player", id));
+    }
+
+    @Test
+    public void commitVirtualAppliesAllChanges() {
+        MemoryDAO dao = new MemoryDAO();
+        GringottsAccount from = account("from");
+        GringottsAccount to = account("to");
+        Map<GringottsAccount, Long> virtual = new LinkedHashMap<>();
+        Map<GringottsAccount, Long> stored = new HashMap<>();
+
+        dao.put("player", "from", 10);
+        dao.put("player", "to", 3);
+        virtual.put(to, 7L);
+        virtual.put(from, -7L);
+
+        assertNull(TransferEngine.commitVirtual(dao, virtual, stored));
+        assertEquals(Long.valueOf(3), dao.get("player", "from"));
+        assertEquals(Long.valueOf(10), dao.get("player", "to"));
+        assertEquals(Long.valueOf(3), stored.get(from));
+        assertEquals(Long.valueOf(10), stored.get(to));
+    }
+
+    @Test
+    public void commitVirtualRefusesUnfundedWithdrawal() {
+        MemoryDAO dao = new MemoryDAO();
+        GringottsAccount from = account("from");
+        GringottsAccount to = account("to");
+        Map<GringottsAccount, Long> virtual = new LinkedHashMap<>();
+        Map<GringottsAccount, Long> stored = new HashMap<>();
+
+        dao.put("player", "from", 5);
+        dao.put("player", "to", 0);
+        virtual.put(to, 7L);
+        virtual.put(from, -7L);
+
+        assertSame(from, TransferEngine.commitVirtual(dao, virtual, stored));
+        assertEquals(Long.valueOf(5), dao.get("player", "from"));
+        assertEquals(Long.valueOf(0), dao.get("player", "to"));
+        assertTrue(stored.isEmpty());
+    }
+
+    @Test
+    public void commitVirtualRollsBackDebitWhenCreditFails() {
+        MemoryDAO dao = new MemoryDAO();
+        GringottsAccount from = account("from");
+        GringottsAccount missing = account("missing");
+        Map<GringottsAccount, Long> virtual = new LinkedHashMap<>();
+        Map<GringottsAccount, Long> stored = new HashMap<>();
+
+        // the recipient doesn't exist in storage, so the credit after the debit fails
+        dao.put("player", "from", 10);
+        virtual.put(missing, 10L);
+        virtual.put(from, -10L);
+
+        assertSame(missing, TransferEngine.commitVirtual(dao, virtual, stored));
+        assertEquals(Long.valueOf(10), dao.get("player", "from"));
+        assertNull(dao.get("player", "missing"));
+        assertTrue(stored.isEmpty());
+    }
+
+    @Test(expected = GringottsStorageException.class)
+    public void commitVirtualPassesOnStorageFailure() {
+        MemoryDAO dao = new MemoryDAO();
+        Map<GringottsAccount, Long> virtual = new LinkedHashMap<>();
+
+        dao.put("player", "to", 0);
+        dao.failBatches = true;
+        virtual.put(account("to"), 5L);
+
+        TransferEngine.commitVirtual(dao, virtual, new HashMap<>());
+    }
+}
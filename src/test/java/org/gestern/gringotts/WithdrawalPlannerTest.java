@@ -0,0 +1,253 @@
+package org.gestern.gringotts;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.gestern.gringotts.currency.GringottsCurrency;
+import org.gestern.gringotts.data.ChestIndex;
+import org.gestern.gringotts.data.MemoryDAO;
+import org.gestern.gringotts.data.VaultSnapshots;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+
+public class WithdrawalPlannerTest {
+
+    private static final Logger LOG = Logger.getLogger(WithdrawalPlannerTest.class.getName());
+
+    private static GringottsCurrency currency;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Items only need the item factory of a server to tell that they have no meta. Vault snapshots only need a
+     * scheduler that doesn't run their save task.
+     */
+    @BeforeClass
+    public static void setUp() {
+        if (Bukkit.getServer() == null) {
+            ItemFactory items = (ItemFactory) Proxy.newProxyInstance(
+                    ItemFactory.class.getClassLoader(),
+                    new Class<?>[]{ItemFactory.class},
+                    (proxy, method, args) -> method.getName().equals("equals") && args.length == 2
+                            ? args[0] == args[1]
+                            : null
+            );
+            BukkitScheduler scheduler = (BukkitScheduler) Proxy.newProxyInstance(
+                    BukkitScheduler.class.getClassLoader(),
+                    new Class<?>[]{BukkitScheduler.class},
+                    (proxy, method, args) -> null
+            );
+
+            Bukkit.setServer((Server) Proxy.newProxyInstance(
+                    Server.class.getClassLoader(),
+                    new Class<?>[]{Server.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getItemFactory":
+                                return items;
+                            case "getScheduler":
+                                return scheduler;
+                            case "getLogger":
+                                return LOG;
+                            case "getName":
+                            case "getVersion":
+                            case "getBukkitVersion":
+                                return "test";
+                            default:
+                                return null;
+                        }
+                    }
+            ));
+        }
+
+        currency = new GringottsCurrency("Emerald", "Emeralds", 0, false);
+        currency.addDenomination(new ItemStack(Material.EMERALD_BLOCK), 9, "Block", "Blocks");
+        currency.addDenomination(new ItemStack(Material.EMERALD), 1, "Emerald", "Emeralds");
+    }
+
+    /**
+     * Chest inventory holding the given storage slots.
+     */
+    private static Inventory inventory(ItemStack... slots) {
+        return inventory(InventoryType.CHEST, slots);
+    }
+
+    /**
+     * Inventory of a type holding the given storage slots.
+     */
+    private static Inventory inventory(InventoryType type, ItemStack... slots) {
+        ItemStack[][] contents = {slots.clone()};
+
+        return (Inventory) Proxy.newProxyInstance(
+                Inventory.class.getClassLoader(),
+                new Class<?>[]{Inventory.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getStorageContents":
+                            return contents[0].clone();
+                        case "setStorageContents":
+                            contents[0] = ((ItemStack[]) args[0]).clone();
+                            return null;
+                        case "getMaxStackSize":
+                            return 64;
+                        case "getType":
+                            return type;
+                        case "getLocation":
+                            // not cached by the chest balance cache
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }
+        );
+    }
+
+    private static WithdrawalPlanner planner(Inventory... inventories) {
+        return new WithdrawalPlanner(
+                Arrays.asList(inventories),
+                Collections.emptyMap(),
+                currency,
+                new ChestBalanceCache(),
+                null
+        );
+    }
+
+    private VaultSnapshots snapshots() throws IOException {
+        Plugin plugin = (Plugin) Proxy.newProxyInstance(
+                Plugin.class.getClassLoader(),
+                new Class<?>[]{Plugin.class},
+                (proxy, method, args) -> method.getName().equals("getLogger") ? LOG : null
+        );
+
+        return new VaultSnapshots(plugin, folder.newFolder("snapshots"), new MemoryDAO());
+    }
+
+    private static ItemStack emeralds(int amount) {
+        return new ItemStack(Material.EMERALD, amount);
+    }
+
+    private static ItemStack blocks(int amount) {
+        return new ItemStack(Material.EMERALD_BLOCK, amount);
+    }
+
+    @Test
+    public void balanceCountsCurrencyInAllInventories() {
+        WithdrawalPlanner planner = planner(
+                inventory(emeralds(5), new ItemStack(Material.DIRT, 3), null),
+                inventory(blocks(2))
+        );
+
+        assertEquals(23, planner.balance());
+    }
+
+    @Test
+    public void planTakesExactAmount() {
+        WithdrawalPlanner planner = planner(inventory(emeralds(5), blocks(2)));
+
+        // emeralds first, then a block
+        assertEquals(0, planner.plan(14));
+        assertEquals(0, planner.plan(9));
+        assertEquals(1, planner.plan(1));
+    }
+
+    @Test
+    public void planPaysBackChange() {
+        WithdrawalPlanner planner = planner(inventory(blocks(1), null));
+
+        // a block is broken into 2 taken and 7 emeralds of change
+        assertEquals(0, planner.plan(2));
+        assertEquals(0, planner.plan(7));
+        assertEquals(1, planner.plan(1));
+    }
+
+    @Test
+    public void planReportsChangeThatDoesNotFit() {
+        WithdrawalPlanner planner = planner(inventory(blocks(2)));
+
+        assertEquals(-8, planner.plan(1));
+    }
+
+    @Test
+    public void planReportsAmountNotCoveredByItems() {
+        WithdrawalPlanner planner = planner(inventory(emeralds(3)));
+
+        assertEquals(2, planner.plan(5));
+    }
+
+    @Test
+    public void depositFillsStacksThenEmptySlots() {
+        WithdrawalPlanner planner = planner(inventory(emeralds(60), null));
+
+        // 2 blocks into the empty slot, 4 emeralds onto the stack, 1 emerald has no room left
+        assertEquals(1, planner.deposit(23));
+        assertEquals(1, planner.plan(83));
+    }
+
+    @Test
+    public void depositIntoFullInventoryReturnsEverything() {
+        WithdrawalPlanner planner = planner(inventory(new ItemStack(Material.DIRT, 64)));
+
+        assertEquals(10, planner.deposit(10));
+    }
+
+    @Test
+    public void depositedItemsCanBeWithdrawn() {
+        WithdrawalPlanner planner = planner(inventory(null, null));
+
+        assertEquals(0, planner.deposit(20));
+        assertEquals(0, planner.plan(20));
+        assertEquals(1, planner.plan(1));
+    }
+
+    @Test
+    public void commitUpdatesSnapshotsOfChangedVaults() throws IOException {
+        VaultSnapshots snapshots = snapshots();
+        Inventory vault = inventory(blocks(2), null);
+        Inventory untouched = inventory(new ItemStack(Material.DIRT, 5));
+        Inventory player = inventory(InventoryType.PLAYER, emeralds(1));
+        ChestIndex.Entry vaultSign = new ChestIndex.Entry("world", 1, 64, 1, "player", "a");
+        ChestIndex.Entry untouchedSign = new ChestIndex.Entry("world", 5, 64, 5, "player", "a");
+        Map<Inventory, ChestIndex.Entry> vaults = new IdentityHashMap<>();
+
+        vaults.put(vault, vaultSign);
+        vaults.put(untouched, untouchedSign);
+        snapshots.record("world", 1, 64, 1, 18);
+
+        WithdrawalPlanner planner = new WithdrawalPlanner(
+                Arrays.asList(player, vault, untouched),
+                vaults,
+                currency,
+                new ChestBalanceCache(),
+                snapshots
+        );
+
+        // the emerald in the player's inventory, then a block from the vault. the 7 emeralds of change go into the
+        // slot freed in the player's inventory
+        assertEquals(0, planner.plan(3));
+        // only the vault counts towards the vault value
+        assertEquals(-9, planner.commit());
+
+        assertEquals(9, snapshots.get(vaultSign).cents);
+        assertNull(snapshots.get(untouchedSign));
+    }
+}
@@ -0,0 +1,52 @@
+package org.gestern.gringotts.accountholder;
+
+import java.util.Objects;
+
+/**
+ * Account holder without a server behind it.
+ */
+public class TestAccountHolder implements AccountHolder {
+
+    private final String type;
+    private final String id;
+
+    public TestAccountHolder(String type, String id) {
+        this.type = type;
+        this.id = id;
+    }
+
+    @Override
+    public String getName() {
+        return id;
+    }
+
+    @Override
+    public void sendMessage(String message) {
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, id);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof TestAccountHolder)) {
+            return false;
+        }
+
+        TestAccountHolder holder = (TestAccountHolder) other;
+
+        return type.equals(holder.type) && id.equals(holder.id);
+    }
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+}
@@ -0,0 +1,70 @@
+package org.gestern.gringotts.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class ChestIndexTest {
+
+    @Test
+    public void entriesOfAccountIgnoreCaseOfBuiltInTypes() {
+        ChestIndex index = new ChestIndex();
+
+        index.add("world", 1, 64, 1, "player", "abc");
+        index.add("world", 100, 64, 100, "player", "abc");
+        index.add("world", 2, 64, 2, "player", "other");
+
+        assertEquals(2, index.entries("Player", "ABC").size());
+        assertEquals(1, index.entries("player", "other").size());
+    }
+
+    @Test
+    public void entriesOfAccountKeepCaseOfOtherTypes() {
+        ChestIndex index = new ChestIndex();
+
+        index.add("world", 1, 64, 1, "guild", "Knights");
+        index.add("world", 2, 64, 2, "guild", "knights");
+
+        assertEquals(1, index.entries("guild", "Knights").size());
+        assertEquals(1, index.entries("guild", "knights").size());
+    }
+
+    @Test
+    public void replacedChestMovesToNewOwner() {
+        ChestIndex index = new ChestIndex();
+
+        index.add("world", 1, 64, 1, "player", "a");
+        index.add("world", 1, 64, 1, "player", "b");
+
+        assertTrue(index.entries("player", "a").isEmpty());
+        assertEquals(1, index.entries("player", "b").size());
+        assertEquals(1, index.entries().size());
+    }
+
+    @Test
+    public void removeForgetsChestOfAccount() {
+        ChestIndex index = new ChestIndex();
+
+        index.add("world", 1, 64, 1, "player", "a");
+        index.add("world", 2, 64, 2, "player", "a");
+        index.remove("world", 1, 64, 1);
+
+        assertEquals(1, index.entries("player", "a").size());
+        assertTrue(index.near("world", 1, 1, 0).isEmpty());
+    }
+
+    @Test
+    public void removeAccountForgetsAllItsChests() {
+        ChestIndex index = new ChestIndex();
+
+        index.add("world", 1, 64, 1, "player", "a");
+        index.add("nether", 1, 64, 1, "player", "a");
+        index.add("world", 2, 64, 2, "player", "b");
+        index.removeAccount("PLAYER", "A");
+
+        assertTrue(index.entries("player", "a").isEmpty());
+        assertEquals(1, index.entries().size());
+        assertEquals(1, index.near("world", 2, 2, 1).size());
+    }
+}
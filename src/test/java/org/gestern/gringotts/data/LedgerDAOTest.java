@@ -0,0 +1,209 @@
+package org.gestern.gringotts.data;
+
+import org.gestern.gringotts.GringottsAccount;
+import org.gestern.gringotts.accountholder.TestAccountHolder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+
+public class LedgerDAOTest {
+
+    private static final Logger LOG = Logger.getLogger(LedgerDAOTest.class.getName());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static GringottsAccount account(String id) {
+        return new GringottsAccount(new TestAccountHolder("player", id));
+    }
+
+    private static String[] redoLogs(File redoFolder) {
+        String[] names = redoFolder.list((dir, name) -> name.endsWith(".redo"));
+
+        Arrays.sort(names);
+
+        return names;
+    }
+
+    @Test
+    public void recoverWritesLatestBalancesToBackend() throws IOException {
+        MemoryDAO backend = new MemoryDAO();
+        File redoFolder = folder.newFolder("ledger");
+
+        backend.put("player", "a", 0);
+        backend.put("player", "b", 5);
+
+        Files.write(
+                new File(redoFolder, "3.redo").toPath(),
+                "player\ta\t10\nplayer\tb\t7\nplayer\ta\t25\nplayer\tb".getBytes(StandardCharsets.UTF_8)
+        );
+
+        new LedgerDAO(backend, redoFolder, LOG);
+
+        assertEquals(Long.valueOf(25), backend.get("player", "a"));
+        // the torn last line is ignored
+        assertEquals(Long.valueOf(7), backend.get("player", "b"));
+        assertArrayEquals(new String[]{"4.redo"}, redoLogs(redoFolder));
+    }
+
+    @Test
+    public void changesReachBackendOnlyOnFlush() throws IOException {
+        MemoryDAO backend = new MemoryDAO();
+        File redoFolder = folder.newFolder("ledger");
+        LedgerDAO ledger = new LedgerDAO(backend, redoFolder, LOG);
+        GringottsAccount account = account("a");
+
+        backend.put("player", "a", 10);
+
+        assertEquals(40, ledger.addCents(account, 30));
+        assertEquals(40, ledger.retrieveCents(account));
+        assertEquals(Long.valueOf(10), backend.get("player", "a"));
+
+        ledger.flush();
+
+        assertEquals(Long.valueOf(40), backend.get("player", "a"));
+        // the flushed log is gone, changes from now on go into the next one
+        assertArrayEquals(new String[]{"2.redo"}, redoLogs(redoFolder));
+    }
+
+    @Test
+    public void balancesNotUsedSinceLastFlushAreForgotten() throws IOException {
+        MemoryDAO backend = new MemoryDAO();
+        LedgerDAO ledger = new LedgerDAO(backend, folder.newFolder("ledger"), LOG);
+        GringottsAccount account = account("a");
+
+        backend.put("player", "a", 10);
+        ledger.addCents(account, 5);
+        ledger.flush();
+
+        // changed behind the ledger's back, so a fresh read can be told apart from the cached balance
+        backend.put("player", "a", 100);
+
+        assertEquals(15, ledger.retrieveCents(account));
+
+        // the read above keeps the balance for one more flush
+        ledger.flush();
+
+        assertEquals(15, ledger.retrieveCents(account));
+
+        ledger.flush();
+        ledger.flush();
+
+        assertEquals(100, ledger.retrieveCents(account));
+    }
+
+    @Test
+    public void failedFlushIsRetried() throws IOException {
+        MemoryDAO backend = new MemoryDAO();
+        File redoFolder = folder.newFolder("ledger");
+        LedgerDAO ledger = new LedgerDAO(backend, redoFolder, LOG);
+        GringottsAccount account = account("a");
+
+        backend.put("player", "a", 0);
+        ledger.addCents(account, 15);
+
+        backend.failBatches = true;
+        ledger.flush();
+
+        assertEquals(Long.valueOf(0), backend.get("player", "a"));
+        assertEquals(2, redoLogs(redoFolder).length);
+
+        backend.failBatches = false;
+        ledger.flush();
+
+        assertEquals(Long.valueOf(15), backend.get("player", "a"));
+        assertArrayEquals(new String[]{"3.redo"}, redoLogs(redoFolder));
+    }
+
+    @Test
+    public void changeThatCannotBeStoredIsNotVisible() throws IOException {
+        MemoryDAO backend = new MemoryDAO();
+        // a file where the folder should be, so no redo log can be opened and changes are written through
+        LedgerDAO ledger = new LedgerDAO(backend, folder.newFile("ledger"), LOG);
+        GringottsAccount missing = account("missing");
+
+        assertEquals(-1, ledger.addCents(missing, 20));
+        assertEquals(0, ledger.retrieveCents(missing));
+        assertFalse(ledger.storeCents(missing, 20));
+        assertEquals(0, ledger.retrieveCents(missing));
+    }
+
+    @Test
+    public void failedBatchRevertsWithdrawalsAndDropsDeposits() throws IOException {
+        MemoryDAO backend = new MemoryDAO();
+        LedgerDAO ledger = new LedgerDAO(backend, folder.newFolder("ledger"), LOG);
+        GringottsAccount from = account("from");
+        GringottsAccount to = account("to");
+
+        backend.put("player", "from", 10);
+        backend.put("player", "to", 0);
+
+        try {
+            ledger.batch(() -> {
+                assertEquals(0, ledger.addCents(from, -10));
+                assertEquals(10, ledger.addCents(to, 10));
+
+                // deposits only become visible when the batch succeeded
+                assertEquals(0, ledger.retrieveCents(to));
+
+                throw new IllegalStateException("fail after the deposit");
+            });
+
+            fail("batch should fail");
+        } catch (IllegalStateException expected) {
+        }
+
+        assertEquals(10, ledger.retrieveCents(from));
+        assertEquals(0, ledger.retrieveCents(to));
+
+        ledger.flush();
+
+        assertEquals(Long.valueOf(10), backend.get("player", "from"));
+        assertEquals(Long.valueOf(0), backend.get("player", "to"));
+    }
+
+    @Test
+    public void batchAppliesChangesInOrder() throws IOException {
+        MemoryDAO backend = new MemoryDAO();
+        LedgerDAO ledger = new LedgerDAO(backend, folder.newFolder("ledger"), LOG);
+        GringottsAccount account = account("a");
+
+        backend.put("player", "a", 0);
+
+        ledger.batch(() -> {
+            assertEquals(10, ledger.addCents(account, 10));
+            // covered by the deposit before it, which isn't applied yet
+            assertEquals(4, ledger.addCents(account, -6));
+            assertEquals(-1, ledger.addCents(account, -5));
+        });
+
+        assertEquals(4, ledger.retrieveCents(account));
+    }
+
+    @Test
+    public void storeByNameReplacesCachedBalance() throws IOException {
+        MemoryDAO backend = new MemoryDAO();
+        LedgerDAO ledger = new LedgerDAO(backend, folder.newFolder("ledger"), LOG);
+        GringottsAccount account = account("a");
+
+        backend.put("player", "a", 10);
+        ledger.addCents(account, 5);
+
+        assertTrue(ledger.storeCents("player", "a", 100));
+        assertEquals(100, ledger.retrieveCents(account));
+
+        ledger.flush();
+
+        assertEquals(Long.valueOf(100), backend.get("player", "a"));
+    }
+}
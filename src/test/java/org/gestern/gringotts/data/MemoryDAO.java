@@ -0,0 +1,215 @@
+package org.gestern.gringotts.data;
+
+import org.bukkit.Location;
+import org.gestern.gringotts.AccountChest;
+import org.gestern.gringotts.GringottsAccount;
+import org.gestern.gringotts.GringottsStorageException;
+import org.gestern.gringotts.accountholder.AccountHolder;
+import org.gestern.gringotts.event.VaultCreationEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Virtual balances in memory, with batches that are rolled back when they throw.
+ * Only accounts that were stored can hold cents, like in the database.
+ */
+public class MemoryDAO implements DAO {
+
+    private final Map<String, Long> cents = new LinkedHashMap<>();
+
+    /**
+     * When set, every batch fails before running.
+     */
+    public boolean failBatches = false;
+
+    private static String key(String type, String owner) {
+        return type + ":" + owner;
+    }
+
+    /**
+     * Create an account with the given balance.
+     *
+     * @param type   account type
+     * @param owner  account id
+     * @param amount virtual cents
+     */
+    public synchronized void put(String type, String owner, long amount) {
+        cents.put(key(type, owner), amount);
+    }
+
+    /**
+     * Stored balance of an account.
+     *
+     * @param type  account type
+     * @param owner account id
+     * @return virtual cents, or null if the account doesn't exist
+     */
+    public synchronized Long get(String type, String owner) {
+        return cents.get(key(type, owner));
+    }
+
+    @Override
+    public synchronized boolean storeCents(GringottsAccount account, long amount) {
+        return storeCents(account.owner.getType(), account.owner.getId(), amount);
+    }
+
+    @Override
+    public synchronized boolean storeCents(String type, String owner, long amount) {
+        return cents.replace(key(type, owner), amount) != null;
+    }
+
+    @Override
+    public synchronized long addCents(GringottsAccount account, long delta) {
+        String key = key(account.owner.getType(), account.owner.getId());
+        Long stored = cents.get(key);
+
+        if (stored == null || stored + delta < 0) {
+            return -1;
+        }
+
+        cents.put(key, stored + delta);
+
+        return stored + delta;
+    }
+
+    @Override
+    public synchronized long retrieveCents(GringottsAccount account) {
+        return cents.getOrDefault(key(account.owner.getType(), account.owner.getId()), 0L);
+    }
+
+    @Override
+    public synchronized Map<String, Long> retrieveCents(String type) {
+        Map<String, Long> result = new HashMap<>();
+
+        for (Map.Entry<String, Long> entry : cents.entrySet()) {
+            if (entry.getKey().startsWith(type + ":")) {
+                result.put(entry.getKey().substring(type.length() + 1), entry.getValue());
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized Map<String, Long> retrieveCents(String type, Collection<String> owners) {
+        Map<String, Long> result = retrieveCents(type);
+
+        result.keySet().retainAll(owners);
+
+        return result;
+    }
+
+    @Override
+    public synchronized void batch(Runnable batch) {
+        if (failBatches) {
+            throw new GringottsStorageException("Batch failed");
+        }
+
+        Map<String, Long> before = new LinkedHashMap<>(cents);
+
+        try {
+            batch.run();
+        } catch (RuntimeException e) {
+            cents.clear();
+            cents.putAll(before);
+
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized boolean storeAccount(GringottsAccount account) {
+        cents.putIfAbsent(key(account.owner.getType(), account.owner.getId()), 0L);
+
+        return true;
+    }
+
+    @Override
+    public synchronized boolean hasAccount(AccountHolder accountHolder) {
+        return cents.containsKey(key(accountHolder.getType(), accountHolder.getId()));
+    }
+
+    @Override
+    public synchronized boolean deleteAccount(GringottsAccount acc) {
+        return deleteAccount(acc.owner.getType(), acc.owner.getId());
+    }
+
+    @Override
+    public synchronized boolean deleteAccount(String type, String account) {
+        return cents.remove(key(type, account)) != null;
+    }
+
+    @Override
+    public boolean storeAccountChest(AccountChest chest) {
+        return false;
+    }
+
+    @Override
+    public boolean deleteAccountChest(AccountChest chest) {
+        return false;
+    }
+
+    @Override
+    public boolean deleteAccountChest(String world, int x, int y, int z) {
+        return false;
+    }
+
+    @Override
+    public boolean renameAccount(String type, @NotNull AccountHolder holder, String newName) {
+        return false;
+    }
+
+    @Override
+    public boolean renameAccount(String type, String oldName, String newName) {
+        return false;
+    }
+
+    @Override
+    public List<AccountChest> retrieveChests() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<AccountChest> retrieveChests(GringottsAccount account) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<AccountChest> retrieveChestsNear(Location location, int radius) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<ChestIndex.Entry> retrieveChestLocations() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public void forEachAccount(Consumer<String> action) {
+    }
+
+    @Override
+    public void forEachAccount(VaultCreationEvent.Type type, Consumer<String> action) {
+    }
+
+    @Override
+    public boolean deleteAccountChests(GringottsAccount acc) {
+        return false;
+    }
+
+    @Override
+    public boolean deleteAccountChests(String account) {
+        return false;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}